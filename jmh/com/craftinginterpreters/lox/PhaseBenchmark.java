@@ -0,0 +1,72 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the scanner, the parser and the interpreter, measured separately over the scripts in benchmark/.
+//the input of each phase is made once in setup, so only the phase itself is measured: the scan benchmark scans the
+//source, the parse benchmark parses the tokens the scanner made, and the interpret benchmark runs the prepared tree
+//in a new interpreter. anything the scripts print is discarded.
+//run with "-prof gc" to see how much each phase allocates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhaseBenchmark {
+    @Param({"arithmetic", "closures", "contention", "fib", "lists", "nested_loop", "nesting", "strings"})
+    public String script;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+    private ErrorReporter reporter;
+    private LoxOutput output;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get("benchmark", script + ".lox"));
+        source = new String(bytes, Charset.defaultCharset());
+
+        reporter = new ErrorReporter(System.err);
+        tokens = new Scanner(source, reporter).scanTokens();
+        statements = Lox.prepare(new Parser(tokens, reporter).parse(), reporter, true);
+        if (reporter.hadError) throw new IllegalStateException(script + " has errors.");
+
+        output = new LoxOutput.Stream(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public List<Token> scan() {
+        return new Scanner(source, reporter).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, reporter).parse();
+    }
+
+    @Benchmark
+    public void interpret() {
+        new Interpreter(reporter, output).interpret(statements);
+    }
+}
@@ -0,0 +1,115 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+//on-disk cache of parsed syntax trees, so running the same script again skips scanning and parsing.
+//each tree is stored in its own file named after a sha-256 hash of the script's source, so an edited script
+//just misses the cache. the directory is ~/.cache/lox unless the lox.cache.dir system property says otherwise.
+//the cache only ever speeds things up, a file that can't be read or written is treated as a miss.
+class AstCache {
+    private static final String EXTENSION = ".ast";
+
+    private final Path directory;
+
+    AstCache() {
+        this(defaultDirectory());
+    }
+
+    AstCache(Path directory) {
+        this.directory = directory;
+    }
+
+    private static Path defaultDirectory() {
+        String directory = System.getProperty("lox.cache.dir");
+        if (directory != null) return Paths.get(directory);
+        return Paths.get(System.getProperty("user.home"), ".cache", "lox");
+    }
+
+    //returns the cached tree for a source, or null if there isn't one.
+    List<Stmt> load(ByteBuffer source) {
+        Path file = file(source);
+        if (!Files.isRegularFile(file)) return null;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return new AstReader(new DataInputStream(in)).read();
+        }
+        catch (IOException | RuntimeException error) {
+            //written by another version or damaged, it gets replaced once the source is parsed again.
+            delete(file);
+            return null;
+        }
+    }
+
+    //stores the tree parsed from a source. it's written to a temporary file first and then moved into place,
+    //so a run reading the cache at the same time never sees half a file.
+    void store(ByteBuffer source, List<Stmt> statements) {
+        Path file = file(source);
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, "tree", ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                new AstWriter(new DataOutputStream(out)).write(statements);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException error) {
+            if (temporary != null) delete(temporary);
+        }
+    }
+
+    //deletes every cached tree.
+    void clear() throws IOException {
+        if (!Files.isDirectory(directory)) return;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*{" + EXTENSION + ",.tmp}")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    //the file a source's tree is stored in. the charset is part of the hash since it changes what the bytes mean.
+    private Path file(ByteBuffer source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+
+        digest.update(Charset.defaultCharset().name().getBytes(Charset.defaultCharset()));
+        digest.update(source.duplicate());
+
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest()) {
+            name.append(String.format("%02x", b));
+        }
+        return directory.resolve(name + EXTENSION);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException ignored) {
+        }
+    }
+}
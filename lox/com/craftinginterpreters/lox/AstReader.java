@@ -0,0 +1,189 @@
+package com.craftinginterpreters.lox;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.AstWriter.*;
+
+//reads back a syntax tree written by AstWriter. the tree comes back exactly as the parser made it,
+//it still has to go through the resolver before it can run.
+class AstReader {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+
+    AstReader(DataInputStream in) {
+        this.in = in;
+    }
+
+    //reads the header and the list of top-level statements, failing if the file was written in another format.
+    List<Stmt> read() throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a syntax tree in the current format.");
+        }
+        return readStatements();
+    }
+
+    private List<Stmt> readStatements() throws IOException {
+        int count = in.readInt();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            statements.add(readStmt());
+        }
+        return statements;
+    }
+
+    private Stmt readStmt() throws IOException {
+        byte tag = in.readByte();
+        if (tag == NONE) return null;
+
+        int line = in.readInt();
+        Stmt stmt = readStmt(tag);
+        stmt.line = line;
+        return stmt;
+    }
+
+    private Stmt readStmt(byte tag) throws IOException {
+        switch (tag) {
+            case EXPRESSION:
+                return new Stmt.Expression(readExpr());
+            case FUNCTION: {
+                Token name = readToken();
+                int count = in.readInt();
+                List<Token> params = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    params.add(readToken());
+                }
+                return new Stmt.Function(name, params, readStatements());
+            }
+            case IF: {
+                Expr condition = readExpr();
+                Stmt thenBranch = readStmt();
+                return new Stmt.If(condition, thenBranch, readStmt());
+            }
+            case BLOCK:
+                return new Stmt.Block(readStatements());
+            case PRINT:
+                return new Stmt.Print(readExpr());
+            case RETURN: {
+                Token keyword = readToken();
+                return new Stmt.Return(keyword, readExpr());
+            }
+            case WHILE: {
+                Expr condition = readExpr();
+                return new Stmt.While(condition, readStmt());
+            }
+            case VAR: {
+                Token name = readToken();
+                return new Stmt.Var(name, readExpr());
+            }
+        }
+
+        throw new IOException("Unknown statement tag " + tag + ".");
+    }
+
+    private Expr readExpr() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NONE:
+                return null;
+            case ASSIGN: {
+                Token name = readToken();
+                return new Expr.Assign(name, readExpr());
+            }
+            case BINARY: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return new Expr.Binary(left, operator, readExpr());
+            }
+            case CALL: {
+                Expr callee = readExpr();
+                Token paren = readToken();
+                int count = in.readInt();
+                List<Expr> arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    arguments.add(readExpr());
+                }
+                return new Expr.Call(callee, paren, arguments);
+            }
+            case GROUPING:
+                return new Expr.Grouping(readExpr());
+            case LITERAL:
+                return new Expr.Literal(readValue());
+            case LOGICAL: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return new Expr.Logical(left, operator, readExpr());
+            }
+            case UNARY: {
+                Token operator = readToken();
+                return new Expr.Unary(operator, readExpr());
+            }
+            case VARIABLE:
+                return new Expr.Variable(readToken());
+            case INDEX: {
+                Expr object = readExpr();
+                Token bracket = readToken();
+                return new Expr.Index(object, bracket, readExpr());
+            }
+            case LIST_LITERAL: {
+                Token bracket = readToken();
+                int count = in.readInt();
+                List<Expr> elements = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    elements.add(readExpr());
+                }
+                return new Expr.ListLiteral(bracket, elements);
+            }
+            case SET_INDEX: {
+                Expr object = readExpr();
+                Token bracket = readToken();
+                Expr index = readExpr();
+                return new Expr.SetIndex(object, bracket, index, readExpr());
+            }
+        }
+
+        throw new IOException("Unknown expression tag " + tag + ".");
+    }
+
+    private Token readToken() throws IOException {
+        TokenType type;
+        try {
+            type = TokenType.valueOf(readString());
+        }
+        catch (IllegalArgumentException error) {
+            throw new IOException("Unknown token type.", error);
+        }
+
+        String lexeme = readString();
+        Object literal = readValue();
+        return new Token(type, lexeme, literal, in.readInt());
+    }
+
+    private Object readValue() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL_VALUE: return null;
+            case TRUE_VALUE: return true;
+            case FALSE_VALUE: return false;
+            case NUMBER_VALUE: return in.readDouble();
+            case STRING_VALUE: return readString();
+        }
+
+        throw new IOException("Unknown value tag " + tag + ".");
+    }
+
+    //reads a string's index in the table, and its text if this is the first time it appears.
+    private String readString() throws IOException {
+        int index = in.readInt();
+        if (index == strings.size()) {
+            strings.add(in.readUTF());
+        }
+        else if (index < 0 || index > strings.size()) {
+            throw new IOException("Bad string index " + index + ".");
+        }
+
+        return strings.get(index);
+    }
+}
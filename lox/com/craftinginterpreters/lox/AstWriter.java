@@ -0,0 +1,332 @@
+package com.craftinginterpreters.lox;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//writes a parsed syntax tree in the binary format AstReader reads back.
+//every node starts with a one byte tag, a missing node is written as NONE. a statement's tag is followed by its line.
+//strings go through a table, the first time a string is written its index is followed by its text,
+//after that only the index is written.
+//only what the parser produces is written, the resolver runs again after the tree is read.
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    static final int MAGIC = 0x4c4f5841;
+    static final int VERSION = 3;
+
+    static final byte NONE = 0;
+
+    static final byte ASSIGN = 1;
+    static final byte BINARY = 2;
+    static final byte CALL = 3;
+    static final byte GROUPING = 4;
+    static final byte LITERAL = 5;
+    static final byte LOGICAL = 6;
+    static final byte UNARY = 7;
+    static final byte VARIABLE = 8;
+
+    static final byte EXPRESSION = 9;
+    static final byte FUNCTION = 10;
+    static final byte IF = 11;
+    static final byte BLOCK = 12;
+    static final byte PRINT = 13;
+    static final byte RETURN = 14;
+    static final byte WHILE = 15;
+    static final byte VAR = 16;
+
+    //expressions added after the statements.
+    static final byte INDEX = 17;
+    static final byte LIST_LITERAL = 18;
+    static final byte SET_INDEX = 19;
+
+    static final byte NULL_VALUE = 0;
+    static final byte TRUE_VALUE = 1;
+    static final byte FALSE_VALUE = 2;
+    static final byte NUMBER_VALUE = 3;
+    static final byte STRING_VALUE = 4;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    AstWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    //writes the header and a list of top-level statements.
+    void write(List<Stmt> statements) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        try {
+            writeStatements(statements);
+        }
+        catch (UncheckedIOException error) {
+            throw error.getCause();
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        tag(ASSIGN);
+        token(expr.name);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        tag(BINARY);
+        write(expr.left);
+        token(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        tag(CALL);
+        write(expr.callee);
+        token(expr.paren);
+        writeInt(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            write(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        tag(GROUPING);
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        tag(INDEX);
+        write(expr.object);
+        token(expr.bracket);
+        write(expr.index);
+        return null;
+    }
+
+    //only the optimizer makes these, and it runs after the tree is cached. written as the plain expression anyway.
+    @Override
+    public Void visitInvariantExpr(Expr.Invariant expr) {
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitListLiteralExpr(Expr.ListLiteral expr) {
+        tag(LIST_LITERAL);
+        token(expr.bracket);
+        writeInt(expr.elements.size());
+        for (Expr element : expr.elements) {
+            write(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        tag(LITERAL);
+        value(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        tag(LOGICAL);
+        write(expr.left);
+        token(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        tag(SET_INDEX);
+        write(expr.object);
+        token(expr.bracket);
+        write(expr.index);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        tag(UNARY);
+        token(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        tag(VARIABLE);
+        token(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        tag(EXPRESSION, stmt);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        tag(FUNCTION, stmt);
+        token(stmt.name);
+        writeInt(stmt.params.size());
+        for (Token param : stmt.params) {
+            token(param);
+        }
+        writeStatements(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        tag(IF, stmt);
+        write(stmt.condition);
+        write(stmt.thenBranch);
+        write(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        tag(BLOCK, stmt);
+        writeStatements(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        tag(PRINT, stmt);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        tag(RETURN, stmt);
+        token(stmt.keyword);
+        write(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        tag(WHILE, stmt);
+        write(stmt.condition);
+        write(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        tag(VAR, stmt);
+        token(stmt.name);
+        write(stmt.initializer);
+        return null;
+    }
+
+    private void writeStatements(List<Stmt> statements) {
+        writeInt(statements.size());
+        for (Stmt statement : statements) {
+            write(statement);
+        }
+    }
+
+    private void write(Expr expr) {
+        if (expr == null) {
+            tag(NONE);
+            return;
+        }
+        expr.accept(this);
+    }
+
+    private void write(Stmt stmt) {
+        if (stmt == null) {
+            tag(NONE);
+            return;
+        }
+        stmt.accept(this);
+    }
+
+    private void token(Token token) {
+        string(token.type.name());
+        string(token.lexeme());
+        value(token.literal);
+        writeInt(token.line);
+    }
+
+    //writes a literal value with a tag saying what type it is.
+    private void value(Object value) {
+        try {
+            if (value == null) {
+                out.writeByte(NULL_VALUE);
+            }
+            else if (value instanceof Boolean) {
+                out.writeByte((boolean)value ? TRUE_VALUE : FALSE_VALUE);
+            }
+            else if (value instanceof Double) {
+                out.writeByte(NUMBER_VALUE);
+                out.writeDouble((double)value);
+            }
+            else {
+                out.writeByte(STRING_VALUE);
+                string((String)value);
+            }
+        }
+        catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    //writes a string's index in the table, followed by its text the first time it's seen.
+    private void string(String value) {
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeInt(index);
+            return;
+        }
+
+        strings.put(value, strings.size());
+        writeInt(strings.size() - 1);
+        try {
+            out.writeUTF(value);
+        }
+        catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void tag(byte tag, Stmt stmt) {
+        tag(tag);
+        writeInt(stmt.line);
+    }
+
+    private void tag(byte tag) {
+        try {
+            out.writeByte(tag);
+        }
+        catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        }
+        catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.craftinginterpreters.lox;
+
+//executable behaviour for the binary operators that don't take the unboxed arithmetic path: + on values that might
+//be strings, == and !=, and the numeric operators when their operands call something. an Expr.Binary starts with no node, the first time it runs it picks a node specialized to
+//the operand types it sees and installs it. a specialized node only checks that the operand types still match,
+//and if they ever don't, it rewrites the expression to the generic node for good.
+//nodes hold no state, so it doesn't matter which of two racing threads installs one.
+abstract class BinaryNode {
+    abstract Object execute(Expr.Binary expr, Object left, Object right);
+
+    //picks a node for the operand types seen on the first execution, installs it and runs it.
+    static Object specialize(Expr.Binary expr, Object left, Object right) {
+        BinaryNode node = GENERIC;
+
+        switch (expr.operator.type) {
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) node = ADD_DOUBLE;
+                else if (Rope.isString(left) && Rope.isString(right)) node = CONCAT_STRING;
+                break;
+            case EQUAL_EQUAL:
+                if (left instanceof Double && right instanceof Double) node = EQUAL_DOUBLE;
+                break;
+            case BANG_EQUAL:
+                if (left instanceof Double && right instanceof Double) node = NOT_EQUAL_DOUBLE;
+                break;
+        }
+
+        expr.node = node;
+        return node.execute(expr, left, right);
+    }
+
+    //rewrites the expression to the generic node after a specialized node saw operand types it can't handle.
+    static Object deoptimize(Expr.Binary expr, Object left, Object right) {
+        expr.node = GENERIC;
+        return GENERIC.execute(expr, left, right);
+    }
+
+    static final BinaryNode ADD_DOUBLE = new AddDoubleNode();
+    static final BinaryNode CONCAT_STRING = new ConcatStringNode();
+    static final BinaryNode EQUAL_DOUBLE = new EqualDoubleNode();
+    static final BinaryNode NOT_EQUAL_DOUBLE = new NotEqualDoubleNode();
+    static final BinaryNode GENERIC = new GenericNode();
+
+    static final class AddDoubleNode extends BinaryNode {
+        @Override
+        Object execute(Expr.Binary expr, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) {
+                return Numbers.box((double)left + (double)right);
+            }
+            return deoptimize(expr, left, right);
+        }
+    }
+
+    static final class ConcatStringNode extends BinaryNode {
+        @Override
+        Object execute(Expr.Binary expr, Object left, Object right) {
+            if (Rope.isString(left) && Rope.isString(right)) {
+                return Rope.concat(left, right);
+            }
+            return deoptimize(expr, left, right);
+        }
+    }
+
+    //compares bit patterns, which is what Double.equals does, so nan equals nan and 0 doesn't equal -0.
+    static final class EqualDoubleNode extends BinaryNode {
+        @Override
+        Object execute(Expr.Binary expr, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) {
+                return Double.doubleToLongBits((double)left) == Double.doubleToLongBits((double)right);
+            }
+            return deoptimize(expr, left, right);
+        }
+    }
+
+    static final class NotEqualDoubleNode extends BinaryNode {
+        @Override
+        Object execute(Expr.Binary expr, Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) {
+                return Double.doubleToLongBits((double)left) != Double.doubleToLongBits((double)right);
+            }
+            return deoptimize(expr, left, right);
+        }
+    }
+
+    //handles any operand types by dispatching on the operator every time.
+    static final class GenericNode extends BinaryNode {
+        @Override
+        Object execute(Expr.Binary expr, Object left, Object right) {
+            switch (expr.operator.type) {
+                case PLUS:
+                    if (left instanceof Double && right instanceof Double) {
+                        return Numbers.box((double)left + (double)right);
+                    }
+                    if (Rope.isString(left) && Rope.isString(right)) {
+                        return Rope.concat(left, right);
+                    }
+                    throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+                case BANG_EQUAL:
+                    return !Interpreter.isEqual(left, right);
+                case EQUAL_EQUAL:
+                    return Interpreter.isEqual(left, right);
+            }
+
+            if (!(left instanceof Double && right instanceof Double)) {
+                throw new RuntimeError(expr.operator, "Operands must be numbers.");
+            }
+
+            double a = (double)left;
+            double b = (double)right;
+            switch (expr.operator.type) {
+                case MINUS: return Numbers.box(a - b);
+                case SLASH: return Numbers.box(a / b);
+                case STAR: return Numbers.box(a * b);
+                case GREATER: return a > b;
+                case GREATER_EQUAL: return a >= b;
+                case LESS: return a < b;
+                case LESS_EQUAL: return a <= b;
+            }
+
+            return null;
+        }
+    }
+}
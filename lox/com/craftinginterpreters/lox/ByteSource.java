@@ -0,0 +1,52 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//source code read straight out of a byte buffer (usually a memory-mapped file), one byte per character,
+//so a script never has to be decoded into a string. only valid for plain ascii, use isAscii to check first.
+class ByteSource implements CharSequence {
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    ByteSource(ByteBuffer bytes) {
+        this(bytes, bytes.position(), bytes.remaining());
+    }
+
+    private ByteSource(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    //checks if every byte in the buffer is an ascii character.
+    static boolean isAscii(ByteBuffer bytes) {
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            if (bytes.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char)bytes.get(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new ByteSource(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] text = new byte[length];
+        bytes.get(offset, text);
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+}
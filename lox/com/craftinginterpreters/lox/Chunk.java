@@ -0,0 +1,38 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//a compiled sequence of bytecode instructions together with the constants they refer to.
+//every instruction also remembers the token it was compiled from, so that runtime errors can report a line.
+class Chunk {
+    byte[] code = new byte[64];
+    Token[] tokens = new Token[64];
+    int count = 0;
+    final List<Object> constants = new ArrayList<>();
+
+    //appends a byte, growing the arrays when they are full.
+    void write(byte value, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+
+        code[count] = value;
+        tokens[count] = token;
+        count++;
+    }
+
+    //appends a two byte operand.
+    void writeShort(int value, Token token) {
+        write((byte)((value >> 8) & 0xff), token);
+        write((byte)(value & 0xff), token);
+    }
+
+    //adds a value to the constant table and returns its index.
+    int addConstant(Object value) {
+        constants.add(value);
+        return constants.size() - 1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.craftinginterpreters.lox;
+
+//the natives that make and work on lists and maps. reading and writing elements is done with [] instead.
+class CollectionLibrary implements NativeLibrary {
+    @Override
+    public void define(NativeRegistry natives) {
+        natives.define("list", 2, arguments -> {
+            if (!(arguments[0] instanceof Double) || (double)arguments[0] < 0 ||
+                    (double)arguments[0] != (int)(double)arguments[0]) {
+                throw NativeFunction.error("List size must be a whole number that isn't negative.");
+            }
+            return new LoxList((int)(double)arguments[0], arguments[1]);
+        });
+
+        natives.define("map", 0, arguments -> new LoxMap());
+
+        natives.define("len", 1, arguments -> {
+            Object value = arguments[0];
+            if (value instanceof LoxList) return Numbers.box(((LoxList)value).size());
+            if (value instanceof LoxMap) return Numbers.box(((LoxMap)value).size());
+            if (Rope.isString(value)) return Numbers.box(((CharSequence)value).length());
+            throw NativeFunction.error("Can only take the length of a list, a map or a string.");
+        });
+
+        natives.define("push", 2, arguments -> {
+            list(arguments[0]).add(arguments[1]);
+            return null;
+        });
+
+        natives.define("pop", 1, arguments -> list(arguments[0]).removeLast());
+
+        natives.define("sum", 1, arguments -> Numbers.box(list(arguments[0]).sum()));
+
+        natives.define("sort", 1, arguments -> {
+            list(arguments[0]).sort();
+            return null;
+        });
+
+        natives.define("keys", 1, arguments -> map(arguments[0]).keys());
+        natives.define("has", 2, arguments -> map(arguments[0]).has(arguments[1]));
+        natives.define("remove", 2, arguments -> map(arguments[0]).remove(arguments[1]));
+    }
+
+    private static LoxList list(Object value) {
+        if (!(value instanceof LoxList)) throw NativeFunction.error("Argument must be a list.");
+        return (LoxList)value;
+    }
+
+    private static LoxMap map(Object value) {
+        if (!(value instanceof LoxMap)) throw NativeFunction.error("Argument must be a map.");
+        return (LoxMap)value;
+    }
+}
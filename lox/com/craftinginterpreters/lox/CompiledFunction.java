@@ -0,0 +1,21 @@
+package com.craftinginterpreters.lox;
+
+//the compiled form of a function declaration. it's a constant in the enclosing chunk,
+//each time the declaration runs it's paired with the current environment to make a VmFunction.
+class CompiledFunction {
+    final String name;
+    final int arity;
+    final int slots;
+    final Chunk chunk = new Chunk();
+
+    CompiledFunction(String name, int arity, int slots) {
+        this.name = name;
+        this.arity = arity;
+        this.slots = slots;
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + name + ">";
+    }
+}
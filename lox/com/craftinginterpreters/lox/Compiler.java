@@ -0,0 +1,353 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+//compiles a resolved syntax tree into bytecode for the vm.
+//variables keep the depth and slot the resolver gave them, the vm uses the same environments as the interpreter.
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final ErrorReporter reporter;
+    private CompiledFunction function;
+    private Token previous = null;
+
+    Compiler(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    //compiles a list of top-level statements into a function with no parameters that the vm can run.
+    CompiledFunction compile(List<Stmt> statements) {
+        function = new CompiledFunction("script", 0, 0);
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emit(OpCode.NULL, null);
+        emit(OpCode.RETURN, null);
+        return function;
+    }
+
+    //only a block the resolver gave slots of its own gets an environment, the rest run in the current one.
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.slots > 0) {
+            emit(OpCode.PUSH_SCOPE, null);
+            emitShort(stmt.slots, null);
+        }
+
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+
+        if (stmt.slots > 0) emit(OpCode.POP_SCOPE, null);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP, null);
+        return null;
+    }
+
+    //compiles the body into its own function, which is stored as a constant and closed over at runtime.
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        CompiledFunction enclosing = function;
+        function = new CompiledFunction(stmt.name.lexeme(), stmt.params.size(), stmt.slots);
+
+        for (Stmt statement : stmt.body) {
+            compile(statement);
+        }
+        emit(OpCode.NULL, null);
+        emit(OpCode.RETURN, null);
+
+        CompiledFunction compiled = function;
+        function = enclosing;
+
+        emit(OpCode.CLOSURE, stmt.name);
+        emitShort(function.chunk.addConstant(compiled), stmt.name);
+        defineVariable(stmt.name, stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        compile(stmt.condition);
+        int thenJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP, null);
+        compile(stmt.thenBranch);
+
+        int elseJump = emitJump(OpCode.JUMP);
+        patchJump(thenJump);
+        emit(OpCode.POP, null);
+        if (stmt.elseBranch != null) compile(stmt.elseBranch);
+        patchJump(elseJump);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT, null);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value != null) {
+            compile(stmt.value);
+        }
+        else {
+            emit(OpCode.NULL, stmt.keyword);
+        }
+
+        emit(OpCode.RETURN, stmt.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        }
+        else {
+            emit(OpCode.NULL, stmt.name);
+        }
+
+        defineVariable(stmt.name, stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int loopStart = function.chunk.count;
+        compile(stmt.condition);
+
+        int exitJump = emitJump(OpCode.JUMP_IF_FALSE);
+        emit(OpCode.POP, null);
+        compile(stmt.body);
+        emitLoop(loopStart);
+
+        patchJump(exitJump);
+        emit(OpCode.POP, null);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+        emitVariable(OpCode.SET_LOCAL, OpCode.SET_GLOBAL, expr.name, expr.depth, expr.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case PLUS: emit(OpCode.ADD, expr.operator); break;
+            case MINUS: emit(OpCode.SUBTRACT, expr.operator); break;
+            case SLASH: emit(OpCode.DIVIDE, expr.operator); break;
+            case STAR: emit(OpCode.MULTIPLY, expr.operator); break;
+            case GREATER: emit(OpCode.GREATER, expr.operator); break;
+            case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL, expr.operator); break;
+            case LESS: emit(OpCode.LESS, expr.operator); break;
+            case LESS_EQUAL: emit(OpCode.LESS_EQUAL, expr.operator); break;
+            case BANG_EQUAL: emit(OpCode.NOT_EQUAL, expr.operator); break;
+            case EQUAL_EQUAL: emit(OpCode.EQUAL, expr.operator); break;
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        compile(expr.callee);
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+
+        emit(OpCode.CALL, expr.paren);
+        emit((byte)expr.arguments.size(), expr.paren);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        compile(expr.object);
+        compile(expr.index);
+        emit(OpCode.GET_INDEX, expr.bracket);
+        return null;
+    }
+
+    //the vm doesn't cache loop invariant expressions, it evaluates them every time.
+    @Override
+    public Void visitInvariantExpr(Expr.Invariant expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitListLiteralExpr(Expr.ListLiteral expr) {
+        for (Expr element : expr.elements) {
+            compile(element);
+        }
+
+        emit(OpCode.BUILD_LIST, expr.bracket);
+        emitShort(expr.elements.size(), expr.bracket);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NULL, null);
+        }
+        else if (expr.value.equals(true)) {
+            emit(OpCode.TRUE, null);
+        }
+        else if (expr.value.equals(false)) {
+            emit(OpCode.FALSE, null);
+        }
+        else {
+            emit(OpCode.CONSTANT, null);
+            emitShort(function.chunk.addConstant(expr.value), null);
+        }
+
+        return null;
+    }
+
+    //short circuits by jumping over the right operand, leaving the left operand as the result.
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+
+        if (expr.operator.type == TokenType.OR) {
+            int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+            int endJump = emitJump(OpCode.JUMP);
+
+            patchJump(elseJump);
+            emit(OpCode.POP, null);
+            compile(expr.right);
+            patchJump(endJump);
+        }
+        else {
+            int endJump = emitJump(OpCode.JUMP_IF_FALSE);
+            emit(OpCode.POP, null);
+            compile(expr.right);
+            patchJump(endJump);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        compile(expr.object);
+        compile(expr.index);
+        compile(expr.value);
+        emit(OpCode.SET_INDEX, expr.bracket);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case BANG: emit(OpCode.NOT, expr.operator); break;
+            case MINUS: emit(OpCode.NEGATE, expr.operator); break;
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        emitVariable(OpCode.GET_LOCAL, OpCode.GET_GLOBAL, expr.name, expr.depth, expr.slot);
+        return null;
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    //declares the value on top of the stack as a variable, in the globals hashmap at the top level,
+    //otherwise in the slot the resolver gave it in the current environment.
+    private void defineVariable(Token name, int slot) {
+        if (slot == -1) {
+            emit(OpCode.DEFINE_GLOBAL, name);
+            emitShort(function.chunk.addConstant(name), name);
+        }
+        else {
+            emit(OpCode.DEFINE_LOCAL, name);
+            emitShort(slot, name);
+        }
+    }
+
+    //emits a variable access, using the depth and slot the resolver found, or the name for globals.
+    private void emitVariable(byte localOp, byte globalOp, Token name, int depth, int slot) {
+        if (depth == -1) {
+            emit(globalOp, name);
+            emitShort(function.chunk.addConstant(name), name);
+        }
+        else {
+            emit(localOp, name);
+            emitShort(depth, name);
+            emitShort(slot, name);
+        }
+    }
+
+    private void emit(byte value, Token token) {
+        if (token != null) previous = token;
+        function.chunk.write(value, token);
+    }
+
+    private void emitShort(int value, Token token) {
+        if (value > 0xffff) error("Too many constants or variables in one function.");
+        function.chunk.writeShort(value, token);
+    }
+
+    //emits a jump with a placeholder offset and returns where the offset is, so it can be patched later.
+    private int emitJump(byte instruction) {
+        emit(instruction, null);
+        emitShort(0, null);
+        return function.chunk.count - 2;
+    }
+
+    //fills in a jump's offset to land on the next instruction that will be emitted.
+    private void patchJump(int offset) {
+        int jump = function.chunk.count - offset - 2;
+        if (jump > 0xffff) error("Too much code to jump over.");
+
+        function.chunk.code[offset] = (byte)((jump >> 8) & 0xff);
+        function.chunk.code[offset + 1] = (byte)(jump & 0xff);
+    }
+
+    //emits a backwards jump to the start of a loop.
+    private void emitLoop(int loopStart) {
+        emit(OpCode.LOOP, null);
+        int offset = function.chunk.count - loopStart + 2;
+        if (offset > 0xffff) error("Loop body too large.");
+        emitShort(offset & 0xffff, null);
+    }
+
+    //reports a compile error at the last token that was compiled.
+    private void error(String message) {
+        if (previous == null) {
+            reporter.error(0, message);
+        }
+        else {
+            reporter.error(previous, message);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.craftinginterpreters.lox;
+
+//how a statement finished executing. anything other than NORMAL makes the enclosing statements stop
+//and pass the completion outwards until something handles it, like a function call handling RETURN.
+//TAIL_CALL is a return whose value is a call the function being returned from still has to make.
+enum Completion {
+    NORMAL,
+    RETURN,
+    TAIL_CALL
+}
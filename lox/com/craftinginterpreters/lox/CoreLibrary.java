@@ -0,0 +1,29 @@
+package com.craftinginterpreters.lox;
+
+//the natives built into lox: clock, and the natives tasks use to wait for each other and pass values.
+//spawn and flush aren't here, they belong to the interpreter or vm running the program, which define their own.
+class CoreLibrary implements NativeLibrary {
+    @Override
+    public void define(NativeRegistry natives) {
+        natives.define("clock", 0, arguments -> (double)System.currentTimeMillis() / 1000.0);
+
+        natives.define("join", 1, arguments -> {
+            if (!(arguments[0] instanceof LoxTask)) throw NativeFunction.error("Can only join a task.");
+            return ((LoxTask)arguments[0]).join();
+        });
+
+        natives.define("channel", 0, arguments -> new LoxChannel());
+
+        natives.define("send", 2, arguments -> {
+            channel(arguments[0]).send(arguments[1]);
+            return null;
+        });
+
+        natives.define("receive", 1, arguments -> channel(arguments[0]).receive());
+    }
+
+    private static LoxChannel channel(Object value) {
+        if (!(value instanceof LoxChannel)) throw NativeFunction.error("Can only send to and receive from a channel.");
+        return (LoxChannel)value;
+    }
+}
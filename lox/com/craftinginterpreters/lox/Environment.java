@@ -2,47 +2,91 @@ package com.craftinginterpreters.lox;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+//the global environment keeps its variables in a hashmap keyed by symbol, since globals can be referenced before
+//they are declared. symbols are interned, so a lookup hashes with the symbol's precomputed hash and compares identity.
+//local environments keep their variables in an array, indexed by the slot the resolver gave each declaration.
+//once a program spawns a task, its global environment is used by more than one thread, and share switches the
+//hashmap to a concurrent one: lookups never lock, and updates only contend with updates to nearby keys. a program
+//that never spawns a task keeps the plain hashmap. local slots need no switch, storing to an array element can't
+//corrupt anything, and tasks see each other's writes to captured variables once they have synchronized through a
+//channel or a join, the same way java threads see each other's writes to fields.
 public class Environment {
+    //a lox null stored in the global map. a concurrent map can't hold java's null, and keeping it out of the plain
+    //map too means a lookup that finds null always means the variable doesn't exist.
+    private static final Object NULL = new Object();
+
     final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    private Map<Symbol, Object> values;
+    private final Object[] slots;
 
     Environment() {
         enclosing = null;
+        values = new HashMap<>();
+        slots = null;
     }
 
-    Environment(Environment enclosing) {
+    Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        values = null;
+        slots = new Object[size];
+    }
+
+    //makes the global environment safe to use from tasks. only called by the thread spawning a task, before the
+    //task starts, so every task sees the concurrent map. there's no flag for it, every call makes an environment
+    //and a field would make all of them bigger.
+    void share() {
+        if (values instanceof HashMap) {
+            values = new ConcurrentHashMap<>(values);
+        }
+    }
+
+    //defines a global variable.
+    void define(Symbol name, Object value) {
+        values.put(name, value == null ? NULL : value);
     }
 
-    //defines a variable.
-    void define(String name, Object value) {
-        values.put(name, value);
+    //defines a local variable in the slot the resolver gave its declaration.
+    void defineAt(int slot, Object value) {
+        slots[slot] = value;
     }
 
-    //retrieves a variable.
+    //retrieves a global variable.
     Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
+        Object value = values.get(name.symbol);
+        if (value == null) {
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
         }
 
-        if (enclosing != null) return enclosing.get(name);
-
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        return value == NULL ? null : value;
     }
 
-    //assigns a value to an already existing variable.
+    //assigns a value to an already existing global variable.
     void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-            return;
+        //replace only touches existing variables, it gives back null when there is no such variable.
+        if (values.replace(name.symbol, value == null ? NULL : value) == null) {
+            throw new RuntimeError(name, "Undefined variable '" + name.lexeme() + "'.");
         }
+    }
+
+    //retrieves a local variable the resolver found a given number of scopes out.
+    Object getAt(int depth, int slot) {
+        return ancestor(depth).slots[slot];
+    }
+
+    //assigns a local variable the resolver found a given number of scopes out.
+    void assignAt(int depth, int slot, Object value) {
+        ancestor(depth).slots[slot] = value;
+    }
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
+    //walks a fixed number of scopes up the enclosing chain.
+    private Environment ancestor(int depth) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.enclosing;
         }
 
-        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+        return environment;
     }
 }
@@ -0,0 +1,89 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+//the error state of one run of a program. the scanner, parser, resolver and compiler report static errors to it,
+//and the interpreter or vm reports the runtime error that stopped the program. each run has its own reporter,
+//so programs running on different threads don't see each other's errors.
+//every message is kept, and printed as well if the reporter was given somewhere to print it. the tasks a program
+//spawns report to the program's reporter, so it can be used from more than one thread.
+class ErrorReporter {
+    private final PrintStream out;
+    private final List<String> messages = new ArrayList<>();
+
+    volatile boolean hadError = false;
+
+    volatile boolean hadRuntimeError = false;
+
+    //a reporter that only keeps its messages.
+    ErrorReporter() {
+        this(null);
+    }
+
+    ErrorReporter(PrintStream out) {
+        this.out = out;
+    }
+
+    //calls the report function with a line number and error message.
+    synchronized void error(int line, String message) {
+        report(line, " at end", message);
+    }
+
+    //calls the report function with a token and error message.
+    synchronized void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message);
+        }
+        else {
+            report(token.line, " at '" + token.lexeme() + "'", message);
+        }
+    }
+
+    //reports an error with line number and error message.
+    synchronized void runtimeError(RuntimeError error) {
+        print(error.getMessage() + "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+    }
+
+    //the messages reported so far, in the order they were reported.
+    synchronized List<String> messages() {
+        return new ArrayList<>(messages);
+    }
+
+    //reports every static error another reporter kept, in the order it kept them.
+    synchronized void report(ErrorReporter other) {
+        for (String message : other.messages()) {
+            print(message);
+        }
+        if (other.hadError) hadError = true;
+    }
+
+    //a static error message with its line moved by lines, for an error in text that an edit moved.
+    static String moved(String message, int lines) {
+        if (lines == 0 || !message.startsWith("[line ")) return message;
+
+        int end = message.indexOf(']');
+        int line = Integer.parseInt(message.substring("[line ".length(), end));
+        return "[line " + (line + lines) + message.substring(end);
+    }
+
+    //forgets every error, so the reporter can be used for the next program.
+    synchronized void reset() {
+        messages.clear();
+        hadError = false;
+        hadRuntimeError = false;
+    }
+
+    //prints an error message and line. marks hadError as true to stop execution from happening.
+    private void report(int line, String where, String message) {
+        print("[line " + line + "] Error" + where + ": " + message);
+        hadError = true;
+    }
+
+    private void print(String message) {
+        messages.add(message);
+        if (out != null) out.println(message);
+    }
+}
@@ -0,0 +1,232 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+//counts what a program does while an InstrumentedInterpreter runs it: how many times each statement and expression
+//ran, how many times each function was called and the time and memory those calls took, and how many runtime errors
+//stopped the program. the lines statements ran on are its line coverage.
+//the counters are updated by the thread running the program and can be read from any other thread at the same time,
+//which is how they are read over jmx while a long program is still running.
+class ExecutionCounters implements ExecutionListener, ExecutionCountersMBean {
+    static final String OBJECT_NAME = "com.craftinginterpreters.lox:type=ExecutionCounters";
+
+    //how many statements or expressions getHotStatements, getHotExpressions and print list.
+    private static final int HOT_NODES = 20;
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder expressions = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    //how many times each statement and expression ran, keyed by the node's number.
+    private final Map<Integer, NodeCounter> nodes = new ConcurrentHashMap<>();
+    private final Map<FunctionCounters, FunctionCounters> functions = new ConcurrentHashMap<>();
+
+    //how many times one statement or expression ran.
+    private static class NodeCounter {
+        final int node;
+        final int line;
+        final boolean statement;
+        final LongAdder count = new LongAdder();
+
+        NodeCounter(int node, int line, boolean statement) {
+            this.node = node;
+            this.line = line;
+            this.statement = statement;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + " " + (statement ? "statement " : "expression ") + node + ": " + count.sum();
+        }
+    }
+
+    //the calls, time and memory of every closure made from one function declaration, which is told apart from the
+    //others by its name and line. a counters is also its own key.
+    private static class FunctionCounters {
+        final String name;
+        final int line;
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        FunctionCounters(String name, int line) {
+            this.name = name;
+            this.line = line;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof FunctionCounters)) return false;
+            FunctionCounters other = (FunctionCounters)object;
+            return line == other.line && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + line;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (line %d): %d calls, %.3f ms, %d bytes",
+                    name, line, calls.sum(), nanos.sum() / 1e6, bytes.sum());
+        }
+    }
+
+    //registers the counters with the platform mbean server, so jmx clients like jconsole can read them.
+    void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new StandardMBean(this, ExecutionCountersMBean.class), new ObjectName(OBJECT_NAME));
+    }
+
+    @Override
+    public void statement(int node, int line) {
+        statements.increment();
+        nodes.computeIfAbsent(node, key -> new NodeCounter(node, line, true)).count.increment();
+    }
+
+    @Override
+    public void expression(int node, int line) {
+        expressions.increment();
+        nodes.computeIfAbsent(node, key -> new NodeCounter(node, line, false)).count.increment();
+    }
+
+    //how many times the statement or expression with that number ran.
+    long count(int node) {
+        NodeCounter counter = nodes.get(node);
+        return counter == null ? 0 : counter.count.sum();
+    }
+
+    //functions are counted when they return, so the time and memory of a call are there as soon as it's counted.
+    //time and memory include the functions a call made, a recursive function counts them once per level.
+    @Override
+    public void exit(String function, int line, long nanos, long bytes) {
+        calls.increment();
+        FunctionCounters counters = functions.computeIfAbsent(new FunctionCounters(function, line), key -> key);
+        counters.calls.increment();
+        counters.nanos.add(nanos);
+        counters.bytes.add(bytes);
+    }
+
+    @Override
+    public void error(String message, int line) {
+        errors.increment();
+    }
+
+    @Override
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    @Override
+    public long getExpressions() {
+        return expressions.sum();
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public String[] getFunctions() {
+        List<FunctionCounters> list = new ArrayList<>(functions.values());
+        list.sort((a, b) -> Long.compare(b.nanos.sum(), a.nanos.sum()));
+
+        String[] lines = new String[list.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = list.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public String[] getHotStatements() {
+        return hot(true);
+    }
+
+    @Override
+    public String[] getHotExpressions() {
+        return hot(false);
+    }
+
+    //the statements or the expressions that ran the most, with how many times each ran.
+    private String[] hot(boolean statements) {
+        List<NodeCounter> list = new ArrayList<>();
+        for (NodeCounter counter : nodes.values()) {
+            if (counter.statement == statements) list.add(counter);
+        }
+        list.sort((a, b) -> Long.compare(b.count.sum(), a.count.sum()));
+
+        String[] hot = new String[Math.min(HOT_NODES, list.size())];
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = list.get(i).toString();
+        }
+        return hot;
+    }
+
+    @Override
+    public int[] getCoveredLines() {
+        return nodes.values().stream()
+                .filter(counter -> counter.statement)
+                .mapToInt(counter -> counter.line)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    @Override
+    public void reset() {
+        statements.reset();
+        expressions.reset();
+        calls.reset();
+        errors.reset();
+        nodes.clear();
+        functions.clear();
+    }
+
+    //prints a summary of the counters.
+    void print(PrintStream out) {
+        out.println("Instrumentation: " + getStatements() + " statements, " + getExpressions() + " expressions, " +
+                getCalls() + " calls, " + getErrors() + " errors.");
+        for (String function : getFunctions()) {
+            out.println("  " + function);
+        }
+
+        out.println("Hot statements:");
+        for (String statement : getHotStatements()) {
+            out.println("  " + statement);
+        }
+
+        out.println("Hot expressions:");
+        for (String expression : getHotExpressions()) {
+            out.println("  " + expression);
+        }
+
+        int[] covered = getCoveredLines();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < covered.length; i++) {
+            //runs of consecutive lines are written as ranges.
+            int start = covered[i];
+            while (i + 1 < covered.length && covered[i + 1] == covered[i] + 1) i++;
+            if (lines.length() > 0) lines.append(", ");
+            lines.append(start == covered[i] ? "" + start : start + "-" + covered[i]);
+        }
+        out.println("Lines covered: " + lines);
+    }
+}
@@ -0,0 +1,28 @@
+package com.craftinginterpreters.lox;
+
+//what ExecutionCounters shows over jmx, registered as com.craftinginterpreters.lox:type=ExecutionCounters.
+public interface ExecutionCountersMBean {
+    long getStatements();
+
+    long getExpressions();
+
+    long getCalls();
+
+    long getErrors();
+
+    //one line per function that was called: its name, the line it was declared on, how many times it was called,
+    //and the total time and memory of those calls.
+    String[] getFunctions();
+
+    //the statements that ran the most times, with their line, their number and how many times each ran.
+    String[] getHotStatements();
+
+    //the expressions that were evaluated the most times, the same way.
+    String[] getHotExpressions();
+
+    //every line a statement ran on, in order.
+    int[] getCoveredLines();
+
+    //sets every counter back to zero.
+    void reset();
+}
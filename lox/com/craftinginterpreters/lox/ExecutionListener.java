@@ -0,0 +1,25 @@
+package com.craftinginterpreters.lox;
+
+//receives what an instrumented interpreter does while it runs a program, for monitoring code outside the
+//interpreter: attach one with LoxEngine.run or submit. every method does nothing unless it's overridden, so a
+//listener only implements what it's interested in. they are all called on the thread running the program, in the
+//order things happen.
+public interface ExecutionListener {
+    //a statement is about to execute. node is the statement's number, every statement and expression of the program
+    //gets one of its own the first time it runs and keeps it for the rest of the run. line is the line it's on.
+    default void statement(int node, int line) {}
+
+    //an expression is about to be evaluated, numbered the same way as statements. line is the line of its operator
+    //or name, or of the statement it's in if it has neither.
+    default void expression(int node, int line) {}
+
+    //a lox function, declared with that name on that line, started running.
+    default void enter(String function, int line) {}
+
+    //a lox function stopped running, however it stopped. nanos is how long it ran and bytes is how much memory
+    //the thread allocated meanwhile, both including any functions it called.
+    default void exit(String function, int line, long nanos, long bytes) {}
+
+    //a runtime error with that message, raised on that line, stopped the program.
+    default void error(String message, int line) {}
+}
@@ -7,8 +7,12 @@ abstract class Expr {
         R visitBinaryExpr(Binary expr);
         R visitCallExpr(Call expr);
         R visitGroupingExpr(Grouping expr);
+        R visitIndexExpr(Index expr);
+        R visitInvariantExpr(Invariant expr);
+        R visitListLiteralExpr(ListLiteral expr);
         R visitLiteralExpr(Literal expr);
         R visitLogicalExpr(Logical expr);
+        R visitSetIndexExpr(SetIndex expr);
         R visitUnaryExpr(Unary expr);
         R visitVariableExpr(Variable expr);
     }
@@ -25,6 +29,9 @@ abstract class Expr {
 
         final Token name;
         final Expr value;
+
+        int depth;
+        int slot;
     }
     static class Binary extends Expr {
         Binary(Expr left, Token operator, Expr right) {
@@ -41,6 +48,10 @@ abstract class Expr {
         final Expr left;
         final Token operator;
         final Expr right;
+
+        boolean arithmetic;
+        boolean unboxed;
+        BinaryNode node;
     }
     static class Call extends Expr {
         Call(Expr callee, Token paren, List<Expr> arguments) {
@@ -57,6 +68,9 @@ abstract class Expr {
         final Expr callee;
         final Token paren;
         final List<Expr> arguments;
+
+        Object cachedCallee;
+        NativeFunction intrinsic;
     }
     static class Grouping extends Expr {
         Grouping(Expr expression) {
@@ -70,6 +84,53 @@ abstract class Expr {
 
         final Expr expression;
     }
+    static class Index extends Expr {
+        Index(Expr object, Token bracket, Expr index) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIndexExpr(this);
+        }
+
+        final Expr object;
+        final Token bracket;
+        final Expr index;
+    }
+    static class Invariant extends Expr {
+        Invariant(Token name, Expr expression) {
+            this.name = name;
+            this.expression = expression;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitInvariantExpr(this);
+        }
+
+        final Token name;
+        final Expr expression;
+
+        int depth;
+        int slot;
+    }
+    static class ListLiteral extends Expr {
+        ListLiteral(Token bracket, List<Expr> elements) {
+            this.bracket = bracket;
+            this.elements = elements;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitListLiteralExpr(this);
+        }
+
+        final Token bracket;
+        final List<Expr> elements;
+    }
     static class Literal extends Expr {
         Literal(Object value) {
             this.value = value;
@@ -98,6 +159,24 @@ abstract class Expr {
         final Token operator;
         final Expr right;
     }
+    static class SetIndex extends Expr {
+        SetIndex(Expr object, Token bracket, Expr index, Expr value) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSetIndexExpr(this);
+        }
+
+        final Expr object;
+        final Token bracket;
+        final Expr index;
+        final Expr value;
+    }
     static class Unary extends Expr {
         Unary(Token operator, Expr right) {
             this.operator = operator;
@@ -111,6 +190,8 @@ abstract class Expr {
 
         final Token operator;
         final Expr right;
+
+        boolean arithmetic;
     }
     static class Variable extends Expr {
         Variable(Token name) {
@@ -123,6 +204,9 @@ abstract class Expr {
         }
 
         final Token name;
+
+        int depth;
+        int slot;
     }
 
     abstract <R> R accept(Visitor<R> visitor);
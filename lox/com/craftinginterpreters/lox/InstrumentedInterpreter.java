@@ -0,0 +1,119 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+//the tree-walk interpreter reporting everything it does to a listener, used for "--instrument" and by LoxEngine
+//runs that are given a listener.
+//every statement and expression goes to the listener before it runs, and every lox function call is timed and has
+//the memory allocated during it measured. parts of an arithmetic expression that are evaluated unboxed, element
+//assignments that are whole statements, and the call of a tail call, don't go through evaluate, so they are only seen
+//as part of the expression or statement around them.
+//the plain interpreter never loads this class, so none of this costs anything when it isn't used.
+class InstrumentedInterpreter extends Interpreter {
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private final ExecutionListener listener;
+
+    //the number and line of every statement and expression that ran so far, numbered in the order they first ran.
+    private final Map<Object, Node> nodes = new IdentityHashMap<>();
+
+    //the line of the statement that started last, for expressions that have no token of their own.
+    private int line = 0;
+
+    private static class Node {
+        final int number;
+        final int line;
+
+        Node(int number, int line) {
+            this.number = number;
+            this.line = line;
+        }
+    }
+
+    //the running functions, with the time each one started and how much the thread had allocated by then.
+    private LoxFunction[] functions = new LoxFunction[64];
+    private long[] startNanos = new long[64];
+    private long[] startBytes = new long[64];
+    private int depth = 0;
+
+    InstrumentedInterpreter(ErrorReporter reporter, LoxOutput output, ExecutionListener listener) {
+        super(reporter, output);
+        this.listener = listener;
+    }
+
+    @Override
+    Completion execute(Stmt stmt) {
+        Node node = nodes.get(stmt);
+        if (node == null) node = number(stmt, stmt.line);
+        line = stmt.line;
+        listener.statement(node.number, node.line);
+        return super.execute(stmt);
+    }
+
+    @Override
+    Object evaluate(Expr expr) {
+        Node node = nodes.get(expr);
+        if (node == null) node = number(expr, line(expr));
+        listener.expression(node.number, node.line);
+        return super.evaluate(expr);
+    }
+
+    //gives a statement or expression that runs for the first time the next number.
+    private Node number(Object node, int line) {
+        Node numbered = new Node(nodes.size(), line);
+        nodes.put(node, numbered);
+        return numbered;
+    }
+
+    //the line of an expression's operator or name, or of the statement it's in.
+    private int line(Expr expr) {
+        if (expr instanceof Expr.Binary) return ((Expr.Binary)expr).operator.line;
+        if (expr instanceof Expr.Logical) return ((Expr.Logical)expr).operator.line;
+        if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).operator.line;
+        if (expr instanceof Expr.Variable) return ((Expr.Variable)expr).name.line;
+        if (expr instanceof Expr.Assign) return ((Expr.Assign)expr).name.line;
+        if (expr instanceof Expr.Invariant) return ((Expr.Invariant)expr).name.line;
+        if (expr instanceof Expr.Call) return ((Expr.Call)expr).paren.line;
+        if (expr instanceof Expr.Index) return ((Expr.Index)expr).bracket.line;
+        if (expr instanceof Expr.SetIndex) return ((Expr.SetIndex)expr).bracket.line;
+        if (expr instanceof Expr.ListLiteral) return ((Expr.ListLiteral)expr).bracket.line;
+        if (expr instanceof Expr.Grouping) return line(((Expr.Grouping)expr).expression);
+        return line;
+    }
+
+    @Override
+    void enter(LoxFunction function) {
+        if (depth == functions.length) {
+            functions = Arrays.copyOf(functions, depth * 2);
+            startNanos = Arrays.copyOf(startNanos, depth * 2);
+            startBytes = Arrays.copyOf(startBytes, depth * 2);
+        }
+
+        listener.enter(function.name(), function.line());
+        functions[depth] = function;
+        startBytes[depth] = threads.getCurrentThreadAllocatedBytes();
+        startNanos[depth] = System.nanoTime();
+        depth++;
+    }
+
+    @Override
+    void exit() {
+        long nanos = System.nanoTime();
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        depth--;
+
+        LoxFunction function = functions[depth];
+        functions[depth] = null;
+        listener.exit(function.name(), function.line(), nanos - startNanos[depth], bytes - startBytes[depth]);
+    }
+
+    @Override
+    void runtimeError(RuntimeError error) {
+        listener.error(error.getMessage(), error.token.line);
+        super.runtimeError(error);
+    }
+}
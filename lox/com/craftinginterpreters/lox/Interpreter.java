@@ -1,24 +1,86 @@
 package com.craftinginterpreters.lox;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Set;
 
-class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Environment globals = new Environment();
-    private Environment environment = globals;
+class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Completion> {
+    //marks a call site that has seen more than one callee, it never equals a callee so the cache always misses.
+    private static final Object MEGAMORPHIC = new Object();
 
-    Interpreter() {
-        globals.define("clock", new LoxCallable() {
-            @Override
-            public int arity() {return 0;}
+    //shared by every call without arguments, so those calls don't allocate an array.
+    private static final Object[] NO_ARGUMENTS = new Object[0];
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double)System.currentTimeMillis() / 1000.0;
-            }
+    final Environment globals;
+    private Environment environment;
+
+    //the operands of the numeric operator evaluateNumberOperands last looked at. they are read straight after
+    //it returns, before anything else can be evaluated.
+    private double leftOperand;
+    private double rightOperand;
+    private boolean operandIsNumber;
+
+    //the lists and maps being turned into text on each thread. a list or map that contains itself is written as
+    //[...] or {...} where it comes up again, instead of being written forever.
+    private static final ThreadLocal<Set<Object>> stringifying =
+            ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    //the value of the last return statement, waiting for the function call it returns from to pick it up.
+    private Object returnValue;
+
+    //the function and frame of the last tail call, waiting for the function call it returns from to run them.
+    private LoxFunction tailCallee;
+    private Environment tailFrame;
+
+    private final ErrorReporter reporter;
+    final LoxOutput output;
+
+    //an interpreter that prints straight to System.out.
+    Interpreter(ErrorReporter reporter) {
+        this(reporter, new LoxOutput.Stream(System.out));
+    }
+
+    Interpreter(ErrorReporter reporter, LoxOutput output) {
+        this.reporter = reporter;
+        this.output = output;
+        this.globals = new Environment();
+        this.environment = globals;
+        NativeRegistry.standard().defineIn(globals);
+        globals.define(Symbol.intern("spawn"), new NativeFunction(1, arguments -> spawn(arguments[0])));
+        globals.define(Symbol.intern("flush"), new NativeFunction(0, arguments -> {
+            output.flush();
+            return null;
+        }));
+    }
 
-            @Override
-            public String toString() {return "<native fn>";}
+    //the interpreter a task runs in. it shares the globals, the error reporter and the output of the interpreter
+    //that spawned it, everything else about running lox code belongs to the task.
+    private Interpreter(Interpreter parent) {
+        this.reporter = parent.reporter;
+        this.output = parent.output;
+        this.globals = parent.globals;
+        this.environment = globals;
+    }
+
+    //starts a task that calls a lox function with no parameters, in an interpreter of its own.
+    //the task's function keeps its closure, so the task shares every variable the function can see.
+    private LoxTask spawn(Object callee) {
+        if (!(callee instanceof LoxFunction) || ((LoxFunction)callee).arity() != 0) {
+            throw NativeFunction.error("Can only spawn a function with no parameters.");
+        }
+
+        LoxFunction function = (LoxFunction)callee;
+        globals.share();
+        Interpreter task = new Interpreter(this);
+        return new LoxTask(() -> {
+            try {
+                return function.call(task, NO_ARGUMENTS);
+            }
+            catch (RuntimeError error) {
+                task.runtimeError(error);
+                throw error;
+            }
         });
     }
 
@@ -30,10 +92,16 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
         }
         catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            runtimeError(error);
         }
     }
 
+    //reports a runtime error that stopped the program, after what it printed before it stopped.
+    void runtimeError(RuntimeError error) {
+        output.flush();
+        reporter.runtimeError(error);
+    }
+
     //simply returns the literal value.
     @Override
     public Object visitLiteralExpr(Expr.Literal expr) {
@@ -49,6 +117,10 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     //recursively evaluates the right expression, then, applies the operator to it.
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
+        if (expr.arithmetic) {
+            return Numbers.box(evaluateDouble(expr));
+        }
+
         Object right = evaluate(expr.right);
 
         switch (expr.operator.type) {
@@ -56,139 +128,350 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 return !isTruthy(right);
             case MINUS:
                 checkNumberOperand(expr.operator, right);
-                return -(double)right;
+                return Numbers.box(-(double)right);
         }
 
         return null;
     }
 
     //recursively evaluates both right and left expressions, then, applies the operator to them.
+    //arithmetic and comparisons go through the unboxed path, so only the final result of a nested
+    //arithmetic expression is boxed. the other operators, a + that might be joining strings, and operators whose
+    //operands call something run the node the expression specialized itself to.
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
+        if (expr.unboxed) {
+            switch (expr.operator.type) {
+                case PLUS:
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    return Numbers.box(evaluateDouble(expr));
+                case GREATER:
+                    evaluateNumberOperands(expr);
+                    return leftOperand > rightOperand;
+                case GREATER_EQUAL:
+                    evaluateNumberOperands(expr);
+                    return leftOperand >= rightOperand;
+                case LESS:
+                    evaluateNumberOperands(expr);
+                    return leftOperand < rightOperand;
+                case LESS_EQUAL:
+                    evaluateNumberOperands(expr);
+                    return leftOperand <= rightOperand;
+            }
+        }
+
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
 
-        switch (expr.operator.type) {
-            case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double)left + (double)right;
-                }
-                if (left instanceof String && right instanceof String) {
-                    return (String)left + (String)right;
-                }
+        BinaryNode node = expr.node;
+        if (node == null) return BinaryNode.specialize(expr, left, right);
+        return node.execute(expr, left, right);
+    }
+
+    //checks if an expression either produces a number or fails with its own runtime error, and calls nothing,
+    //which is what lets it be evaluated without boxing. the resolver works this out for unary and binary
+    //expressions once, so here it's just a field read.
+    static boolean isArithmetic(Expr expr) {
+        if (expr instanceof Expr.Binary) return ((Expr.Binary)expr).arithmetic;
+        if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).arithmetic;
+        if (expr instanceof Expr.Literal) return ((Expr.Literal)expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping) return isArithmetic(((Expr.Grouping)expr).expression);
+        return false;
+    }
+
+    //evaluates an arithmetic expression to a primitive double, keeping every intermediate result unboxed.
+    //only called on expressions isArithmetic accepts.
+    private double evaluateDouble(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            evaluateNumberOperands(binary);
+
+            switch (binary.operator.type) {
+                case PLUS: return leftOperand + rightOperand;
+                case MINUS: return leftOperand - rightOperand;
+                case SLASH: return leftOperand / rightOperand;
+                case STAR: return leftOperand * rightOperand;
+            }
+        }
+
+        if (expr instanceof Expr.Literal) {
+            return (double)((Expr.Literal)expr).value;
+        }
+
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)expr;
+            if (isArithmetic(unary.right)) return -evaluateDouble(unary.right);
+
+            Object right = evaluate(unary.right);
+            checkNumberOperand(unary.operator, right);
+            return -(double)right;
+        }
+
+        return evaluateDouble(((Expr.Grouping)expr).expression);
+    }
+
+    //evaluates both operands of a numeric operator into leftOperand and rightOperand, unboxed where an operand
+    //is itself arithmetic. both operands are evaluated before either is checked, the same order as the boxed path.
+    private void evaluateNumberOperands(Expr.Binary expr) {
+        double left = numberOperand(expr.left);
+        boolean leftIsNumber = operandIsNumber;
+        double right = numberOperand(expr.right);
+
+        if (!leftIsNumber || !operandIsNumber) {
+            if (expr.operator.type == TokenType.PLUS) {
                 throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
-            case MINUS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left - (double)right;
-            case SLASH:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left / (double)right;
-            case STAR:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left * (double)right;
-            case GREATER:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left > (double)right;
-            case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left >= (double)right;
-            case LESS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left < (double)right;
-            case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double)left <= (double)right;
-            case BANG_EQUAL:
-                return !isEqual(left, right);
-            case EQUAL_EQUAL:
-                return isEqual(left, right);
+            }
+            throw new RuntimeError(expr.operator, "Operands must be numbers.");
         }
 
-        return null;
+        leftOperand = left;
+        rightOperand = right;
+    }
+
+    //evaluates one operand of a numeric operator, sets operandIsNumber to say if it really was a number.
+    private double numberOperand(Expr operand) {
+        if (isArithmetic(operand)) {
+            double value = evaluateDouble(operand);
+            operandIsNumber = true;
+            return value;
+        }
+
+        if (operand instanceof Expr.Index) return indexOperand((Expr.Index)operand);
+
+        Object value = evaluate(operand);
+        operandIsNumber = value instanceof Double;
+        return operandIsNumber ? (double)value : 0;
+    }
+
+    //evaluates an operand that reads an element, an element of a list of numbers is read without boxing it.
+    private double indexOperand(Expr.Index expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        if (object instanceof LoxList && ((LoxList)object).isNumbers()) {
+            LoxList list = (LoxList)object;
+            double value = list.number(list.index(expr.bracket, index));
+            operandIsNumber = true;
+            return value;
+        }
+
+        Object value = getIndex(expr.bracket, object, index);
+        operandIsNumber = value instanceof Double;
+        return operandIsNumber ? (double)value : 0;
+    }
+
+    //evaluates the elements of a list literal into a new list, arithmetic ones straight into a list of numbers.
+    @Override
+    public Object visitListLiteralExpr(Expr.ListLiteral expr) {
+        LoxList list = new LoxList(expr.elements.size());
+        for (Expr element : expr.elements) {
+            if (isArithmetic(element)) {
+                list.add(evaluateDouble(element));
+            }
+            else {
+                list.add(evaluate(element));
+            }
+        }
+        return list;
     }
 
-    //retrieves a value from the global environment hashmap.
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        return getIndex(expr.bracket, object, index);
+    }
+
+    @Override
+    public Object visitSetIndexExpr(Expr.SetIndex expr) {
+        return assignElement(expr, true);
+    }
+
+    //stores a value in an element. an arithmetic value stored in a list is stored unboxed, and only boxed if the
+    //value of the assignment is used.
+    private Object assignElement(Expr.SetIndex expr, boolean used) {
+        Object object = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+
+        if (object instanceof LoxList && isArithmetic(expr.value)) {
+            double value = evaluateDouble(expr.value);
+            LoxList list = (LoxList)object;
+            list.set(list.index(expr.bracket, index), value);
+            return used ? Numbers.box(value) : null;
+        }
+
+        Object value = evaluate(expr.value);
+        setIndex(expr.bracket, object, index, value);
+        return value;
+    }
+
+    //reads an element of a list or map, the vm does it the same way.
+    static Object getIndex(Token bracket, Object object, Object index) {
+        if (object instanceof LoxList) {
+            LoxList list = (LoxList)object;
+            return list.get(list.index(bracket, index));
+        }
+        if (object instanceof LoxMap) return ((LoxMap)object).get(index);
+        throw new RuntimeError(bracket, "Only lists and maps can be indexed.");
+    }
+
+    //stores a value in an element of a list or map, the vm does it the same way.
+    static void setIndex(Token bracket, Object object, Object index, Object value) {
+        if (object instanceof LoxList) {
+            LoxList list = (LoxList)object;
+            list.set(list.index(bracket, index), value);
+        }
+        else if (object instanceof LoxMap) {
+            ((LoxMap)object).put(index, value);
+        }
+        else {
+            throw new RuntimeError(bracket, "Only lists and maps can be indexed.");
+        }
+    }
+
+    //evaluates a loop invariant expression the first time it's reached in each run of its loop, then gives back
+    //that value. the value is kept in a hidden local the optimizer declares as null just before the loop, since
+    //invariant expressions never evaluate to null it doubles as "not evaluated yet". evaluating it where it was
+    //first reached, rather than before the loop, means any runtime error it raises happens at the same point.
+    @Override
+    public Object visitInvariantExpr(Expr.Invariant expr) {
+        Object value = environment.getAt(expr.depth, expr.slot);
+        if (value == null) {
+            value = evaluate(expr.expression);
+            environment.assignAt(expr.depth, expr.slot, value);
+        }
+        return value;
+    }
+
+    //retrieves a value from the slot the resolver found the variable in, or from the global environment hashmap.
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return environment.get(expr.name);
+        if (expr.depth == -1) return globals.get(expr.name);
+        return environment.getAt(expr.depth, expr.slot);
     }
 
     //beings the process of recursively evaluating the expression.
+    //an element assignment on its own, like xs[i] = xs[i] * 2, has a value nothing uses, so it isn't boxed.
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
+        if (stmt.expression instanceof Expr.SetIndex) {
+            assignElement((Expr.SetIndex)stmt.expression, false);
+            return Completion.NORMAL;
+        }
+
         evaluate(stmt.expression);
-        return null;
+        return Completion.NORMAL;
     }
 
     //defines a function.
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
         LoxFunction function = new LoxFunction(stmt, environment);
-        environment.define(stmt.name.lexeme, function);
-        return null;
+        define(stmt.name, stmt.slot, function);
+        return Completion.NORMAL;
     }
 
-    //evaluates and executes an if statement.
+    //evaluates and executes an if statement, passing on how the branch it took completed.
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
+    public Completion visitIfStmt(Stmt.If stmt) {
         if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+            return execute(stmt.thenBranch);
         }
         else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     //begins process of recursively evaluating the expression, then, prints the result.
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
+    public Completion visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
-        return null;
+        output.println(stringify(value));
+        return Completion.NORMAL;
     }
 
+    //evaluates the return value and leaves it for the function call to pick up,
+    //then completes with RETURN so every enclosing statement stops executing.
+    //a tail call to a lox function isn't made here. its frame is prepared and left for the function call to run
+    //in place of the function that is returning, which keeps the java stack flat.
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.tailCall) {
+            Expr.Call call = (Expr.Call)stmt.value;
+            Object callee = evaluate(call.callee);
+
+            if (callee instanceof LoxFunction && ((LoxFunction)callee).arity() == call.arguments.size()) {
+                tailCallee = (LoxFunction)callee;
+                tailFrame = frame(tailCallee, call.arguments);
+                return Completion.TAIL_CALL;
+            }
+
+            returnValue = call(call, callee);
+            return Completion.RETURN;
+        }
+
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
 
-        throw new Return(value);
+        returnValue = value;
+        return Completion.RETURN;
     }
 
-    //declares a variable in the global environment hashmap.
+    //declares a variable in the current environment.
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
-        environment.define(stmt.name.lexeme, value);
-        return null;
+        define(stmt.name, stmt.slot, value);
+        return Completion.NORMAL;
     }
 
-    //continues executing the body of the statement as long as the while condition is true.
+    //defines a variable in the slot the resolver gave it, or in the global environment hashmap.
+    private void define(Token name, int slot, Object value) {
+        if (slot == -1) {
+            globals.define(name.symbol, value);
+        }
+        else {
+            environment.defineAt(slot, value);
+        }
+    }
+
+    //continues executing the body of the statement as long as the while condition is true,
+    //or until the body completes abruptly.
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
+    public Completion visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.body);
+            Completion completion = execute(stmt.body);
+            if (completion != Completion.NORMAL) return completion;
         }
-        return null;
+        return Completion.NORMAL;
     }
 
-    //assigns a value to an already existing variable in the global environment hashmap.
+    //assigns a value to an already existing variable, either in the slot the resolver found it in,
+    //or in the global environment hashmap.
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
-        environment.assign(expr.name, value);
+        if (expr.depth == -1) {
+            globals.assign(expr.name, value);
+        }
+        else {
+            environment.assignAt(expr.depth, expr.slot, value);
+        }
         return value;
     }
 
     //begins the process of executing a block of code, creates a new environment for local variables.
+    //a block with no slots keeps its locals (if it has any) in the current environment, so it just runs there.
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        if (stmt.slots == 0) return executeStatements(stmt.statements);
+        return executeBlock(stmt.statements, new Environment(environment, stmt.slots));
     }
 
     //evaluates a logical expression to true or false.
@@ -206,13 +489,69 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return evaluate(expr.right);
     }
 
+    //calls a function. a lox function with the right number of arguments gets them evaluated straight into the
+    //slots of the environment it will run in, anything else gets them in an array.
+    //each call expression keeps a monomorphic inline cache of the last other callee it checked, calling that same
+    //callee again skips the callable and arity checks. a call site that sees a second callee is marked megamorphic
+    //and checks every time from then on.
     @Override
     public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
+        if (expr.intrinsic != null && globals.get(((Expr.Variable)expr.callee).name) == expr.intrinsic) {
+            return callIntrinsic(expr, expr.intrinsic);
+        }
 
-        List<Object> arguments = new ArrayList<>();
-        for (Expr argument : expr.arguments) {
-            arguments.add(evaluate(argument));
+        //a lox function is called straight from here, a frame less on the java stack for every level of recursion.
+        try {
+            Object callee = evaluate(expr.callee);
+            if (callee instanceof LoxFunction && ((LoxFunction)callee).arity() == expr.arguments.size()) {
+                LoxFunction function = (LoxFunction)callee;
+                return function.call(this, frame(function, expr.arguments));
+            }
+            return call(expr, callee);
+        }
+        catch (StackOverflowError error) {
+            //recursion ran out of java stack. the deepest call that can still make the error reports it, and the
+            //calls under it unwind as they would for any other runtime error.
+            throw new RuntimeError(expr.paren, "Stack overflow.");
+        }
+    }
+
+    //calls a native over numbers the resolver bound the call to, once the callee is known to still be that native.
+    //the arguments are evaluated unboxed where they can be, and nothing is boxed but the result.
+    private Object callIntrinsic(Expr.Call expr, NativeFunction function) {
+        double a = numberOperand(expr.arguments.get(0));
+        boolean numbers = operandIsNumber;
+        double b = 0;
+        if (function.binary != null) {
+            b = numberOperand(expr.arguments.get(1));
+            numbers &= operandIsNumber;
+        }
+        if (!numbers) throw new RuntimeError(expr.paren, NativeFunction.NOT_NUMBERS);
+
+        try {
+            double result = function.binary != null ?
+                    function.binary.applyAsDouble(a, b) : function.unary.applyAsDouble(a);
+            return Numbers.box(result);
+        }
+        catch (RuntimeError error) {
+            if (error.token != null) throw error;
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
+    }
+
+    //evaluates the arguments of a call expression and calls the callee that was already evaluated, anything but a
+    //lox function with the right number of arguments, which the call and return statements call themselves.
+    private Object call(Expr.Call expr, Object callee) {
+        List<Expr> argumentExprs = expr.arguments;
+        int argCount = argumentExprs.size();
+
+        Object[] arguments = argCount == 0 ? NO_ARGUMENTS : new Object[argCount];
+        for (int i = 0; i < argCount; i++) {
+            arguments[i] = evaluate(argumentExprs.get(i));
+        }
+
+        if (callee == expr.cachedCallee) {
+            return callNative(expr, (LoxCallable)callee, arguments);
         }
 
         if (!(callee instanceof  LoxCallable)) {
@@ -220,11 +559,33 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         LoxCallable function = (LoxCallable)callee;
-        if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
+        if (argCount != function.arity()) {
+            throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + argCount + ".");
         }
 
-        return function.call(this, arguments);
+        expr.cachedCallee = expr.cachedCallee == null ? callee : MEGAMORPHIC;
+        return callNative(expr, function, arguments);
+    }
+
+    //calls a callable that takes its arguments in an array. a runtime error a native raises has no token,
+    //it's given the call's closing parenthesis so it's reported at the line of the call.
+    private Object callNative(Expr.Call expr, LoxCallable function, Object[] arguments) {
+        try {
+            return function.call(this, arguments);
+        }
+        catch (RuntimeError error) {
+            if (error.token != null) throw error;
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
+    }
+
+    //makes a lox function's frame and evaluates the arguments straight into its slots.
+    private Environment frame(LoxFunction function, List<Expr> argumentExprs) {
+        Environment frame = function.frame();
+        for (int i = 0; i < argumentExprs.size(); i++) {
+            frame.defineAt(i, evaluate(argumentExprs.get(i)));
+        }
+        return frame;
     }
 
     //checks if an operand is a number.
@@ -233,57 +594,114 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
-    //checks of both right and left operands are numbers.
-    private void checkNumberOperands(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) return;
+    //starts the process of evaluating an expression.
+    Object evaluate(Expr expr) {
+        return expr.accept(this);
+    }
 
-        throw new RuntimeError(operator, "Operands must be numbers.");
+    //starts the process of executing statement. every statement that runs goes through here,
+    //so the profiler and the instrumentation override it to see which line is running.
+    Completion execute(Stmt stmt) {
+        return stmt.accept(this);
     }
 
-    //starts the process of evaluating an expression.
-    private Object evaluate(Expr expr) {
-        return expr.accept(this);
+    //called when a lox function starts running, and when a tail call replaces it with another one.
+    //does nothing unless the interpreter is profiling or instrumented.
+    void enter(LoxFunction function) {
     }
 
-    //starts the process of executing statement.
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    //called when the function that last entered stops running, however it stops.
+    void exit() {
     }
 
-    void executeBlock(List<Stmt> statements, Environment environment) {
+    //executes statements in a new environment, stopping early at the first one that doesn't complete normally.
+    //every lox call runs its body through here, so the statements are run in this frame rather than in
+    //executeStatements, a frame less on the java stack for every level of recursion.
+    Completion executeBlock(List<Stmt> statements, Environment environment) {
         Environment previous = this.environment;
         try {
             this.environment = environment;
-
             for (Stmt statement : statements) {
-                execute(statement);
+                Completion completion = execute(statement);
+                if (completion != Completion.NORMAL) return completion;
             }
+            return Completion.NORMAL;
         }
         finally {
             this.environment = previous;
         }
     }
 
+    //executes statements in the current environment, stopping early at the first one that doesn't complete normally.
+    private Completion executeStatements(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            Completion completion = execute(statement);
+            if (completion != Completion.NORMAL) return completion;
+        }
+        return Completion.NORMAL;
+    }
+
+    //hands over the value of the return statement that just completed, and forgets it.
+    Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+    }
+
+    //hands over the function a return statement just tail called, and forgets it.
+    LoxFunction takeTailCallee() {
+        LoxFunction callee = tailCallee;
+        tailCallee = null;
+        return callee;
+    }
+
+    //hands over the frame, arguments already in place, that the tail called function will run in, and forgets it.
+    Environment takeTailFrame() {
+        Environment frame = tailFrame;
+        tailFrame = null;
+        return frame;
+    }
+
     //checks if an operand is true.
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean)object;
         return true;
     }
 
     //checks if two operands are equal.
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         if ((a == null) && (b == null)) return true;
         if (a == null) return false;
 
+        //a string can be a rope or a java string with the same characters.
+        if (a instanceof Rope) a = a.toString();
+        if (b instanceof Rope) b = b.toString();
         return a.equals(b);
     }
 
     //turns an object into a string that can be displayed.
-    private String stringify(Object object) {
+    //starts turning a list or map into text, false if it's already being turned into text further out.
+    static boolean startStringify(Object container) {
+        return stringifying.get().add(container);
+    }
+
+    static void finishStringify(Object container) {
+        stringifying.get().remove(container);
+    }
+
+    static String stringify(Object object) {
         if (object == null) return "null";
 
         if (object instanceof Double) {
+            //whole numbers below ten million are the ones Double.toString writes with a ".0" and no exponent,
+            //they are printed as integers without making that string first. -0 is left to Double.toString,
+            //as an integer it would lose its sign.
+            double number = (double)object;
+            if (number == (int)number && Math.abs(number) < 1e7 && (number != 0 || 1 / number > 0)) {
+                return Integer.toString((int)number);
+            }
+
             String text = object.toString();
             if (text.endsWith(".0")) {
                 text = text.substring(0, text.length() - 2);
@@ -0,0 +1,152 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//syntax tree to syntax tree pass that moves a tree to other lines, for a declaration an edit above it moved.
+//every node and token is copied with its line moved, the tree it's given is left as it was, so a script made from
+//it earlier keeps its lines. the copy hasn't been resolved, the same as a tree the parser just made.
+class LineShifter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    private final int lines;
+
+    LineShifter(int lines) {
+        this.lines = lines;
+    }
+
+    Stmt shift(Stmt stmt) {
+        if (stmt == null) return null;
+
+        Stmt shifted = stmt.accept(this);
+        shifted.line = stmt.line + lines;
+        return shifted;
+    }
+
+    private List<Stmt> shiftStatements(List<Stmt> statements) {
+        List<Stmt> shifted = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            shifted.add(shift(statement));
+        }
+        return shifted;
+    }
+
+    private Expr shift(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    private List<Expr> shiftExpressions(List<Expr> expressions) {
+        List<Expr> shifted = new ArrayList<>(expressions.size());
+        for (Expr expression : expressions) {
+            shifted.add(shift(expression));
+        }
+        return shifted;
+    }
+
+    private Token shift(Token token) {
+        return token.onLine(token.line + lines);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        return new Stmt.Expression(shift(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        List<Token> params = new ArrayList<>(stmt.params.size());
+        for (Token param : stmt.params) {
+            params.add(shift(param));
+        }
+        return new Stmt.Function(shift(stmt.name), params, shiftStatements(stmt.body));
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        return new Stmt.If(shift(stmt.condition), shift(stmt.thenBranch), shift(stmt.elseBranch));
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        return new Stmt.Block(shiftStatements(stmt.statements));
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        return new Stmt.Print(shift(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        return new Stmt.Return(shift(stmt.keyword), shift(stmt.value));
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        return new Stmt.While(shift(stmt.condition), shift(stmt.body));
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        return new Stmt.Var(shift(stmt.name), shift(stmt.initializer));
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        return new Expr.Assign(shift(expr.name), shift(expr.value));
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        return new Expr.Binary(shift(expr.left), shift(expr.operator), shift(expr.right));
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        return new Expr.Call(shift(expr.callee), shift(expr.paren), shiftExpressions(expr.arguments));
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return new Expr.Grouping(shift(expr.expression));
+    }
+
+    @Override
+    public Expr visitIndexExpr(Expr.Index expr) {
+        return new Expr.Index(shift(expr.object), shift(expr.bracket), shift(expr.index));
+    }
+
+    @Override
+    public Expr visitInvariantExpr(Expr.Invariant expr) {
+        return new Expr.Invariant(shift(expr.name), shift(expr.expression));
+    }
+
+    @Override
+    public Expr visitListLiteralExpr(Expr.ListLiteral expr) {
+        return new Expr.ListLiteral(shift(expr.bracket), shiftExpressions(expr.elements));
+    }
+
+    //a literal has no line, it can be shared.
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        return new Expr.Logical(shift(expr.left), shift(expr.operator), shift(expr.right));
+    }
+
+    @Override
+    public Expr visitSetIndexExpr(Expr.SetIndex expr) {
+        return new Expr.SetIndex(shift(expr.object), shift(expr.bracket), shift(expr.index), shift(expr.value));
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        return new Expr.Unary(shift(expr.operator), shift(expr.right));
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return new Expr.Variable(shift(expr.name));
+    }
+}
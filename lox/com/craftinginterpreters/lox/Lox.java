@@ -3,25 +3,92 @@ package com.craftinginterpreters.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import javax.management.JMException;
 
 //main file.
 public class Lox {
-    private static final Interpreter interpreter = new Interpreter();
+    private static Interpreter interpreter;
+    //the errors of the programs run from the command line, printed as they are reported.
+    private static final ErrorReporter reporter = new ErrorReporter(System.err);
 
-    static boolean hadError = false;
+    //what programs print. a terminal gets every line as it's printed, anything else, a pipe or a file, gets the
+    //lines in large writes.
+    private static final LoxOutput output = System.console() != null ?
+            new LoxOutput.Stream(System.out) : new LoxOutput.Buffered(System.out);
 
-    static boolean hadRuntimeError = false;
+    private static final VM vm = new VM(reporter, output);
+
+    //runs programs on the bytecode vm instead of the tree-walk interpreter.
+    static boolean useVm = false;
+
+    //runs the optimizer over programs before they are executed.
+    static boolean optimize = true;
+
+    //counts what programs do for "--instrument", null when they aren't instrumented.
+    private static ExecutionCounters counters;
+
+    //sources at least this long are parsed in parallel.
+    private static final int PARALLEL_PARSE_LENGTH = 1024 * 1024;
+
+    //parsed syntax trees of scripts that ran before, null when the cache is turned off.
+    private static AstCache cache = new AstCache();
 
     //checks for arguments (filepath) and decides to read the file if there is one,
     //or start reading the console input if there is not.
-    public static void main(String[] args) throws IOException {
+    //"--vm" selects the bytecode vm instead of the tree-walk interpreter.
+    //"--no-cache" always scans and parses the script, without reading or writing the syntax tree cache.
+    //"--clear-cache" empties the syntax tree cache first, on its own it just does that and exits.
+    //"--no-optimize" runs the program exactly as it was parsed, to compare against the optimized program.
+    //"--profile" samples the script while it runs on the tree-walk interpreter and reports where the time went.
+    //"--instrument" counts what the tree-walk interpreter runs, the counters can be read over jmx while it runs.
+    public static void main(String[] args) throws IOException, JMException {
+        boolean clearCache = false;
+        boolean profile = false;
+        boolean instrument = false;
+        int flags = 0;
+        for (; flags < args.length && args[flags].startsWith("--"); flags++) {
+            switch (args[flags]) {
+                case "--vm": useVm = true; break;
+                case "--no-cache": cache = null; break;
+                case "--clear-cache": clearCache = true; break;
+                case "--no-optimize": optimize = false; break;
+                case "--profile": profile = true; break;
+                case "--instrument": instrument = true; break;
+                default: usage();
+            }
+        }
+        args = Arrays.copyOfRange(args, flags, args.length);
+
+        if (profile) {
+            //the profiler only knows how to follow the tree-walk interpreter, and it reports on a whole script.
+            if (useVm || instrument || args.length != 1) usage();
+            interpreter = new ProfilingInterpreter(reporter, output, profileOutput(args[0]));
+        }
+        else if (instrument) {
+            if (useVm) usage();
+            counters = new ExecutionCounters();
+            counters.register();
+            interpreter = new InstrumentedInterpreter(reporter, output, counters);
+        }
+        else {
+            interpreter = new Interpreter(reporter, output);
+        }
+
+        if (clearCache) {
+            new AstCache().clear();
+            if (args.length == 0) return;
+        }
+
         if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
+            usage();
         }
         else if (args.length == 1) {
             runFile(args[0]);
@@ -31,12 +98,42 @@ public class Lox {
         }
     }
 
-    //reads a file into a string, then passes that string to the run function.
+    private static void usage() {
+        System.out.println("Usage: jlox [--vm] [--no-cache] [--clear-cache] [--no-optimize] [--profile] [--instrument] [script]");
+        System.exit(64);
+    }
+
+    //the file the profile of a script is written to, in the current directory: "fib.lox" is profiled to "fib.collapsed".
+    private static Path profileOutput(String script) {
+        String name = Paths.get(script).getFileName().toString();
+        if (name.endsWith(".lox")) name = name.substring(0, name.length() - ".lox".length());
+        return Paths.get(name + ".collapsed");
+    }
+
+    //maps a file into memory and runs it. the syntax tree comes from the cache if this exact source was parsed
+    //before, otherwise the source is scanned and parsed and the tree is cached for next time.
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run (new String(bytes, Charset.defaultCharset()));
-        if (hadError) System.exit(65);
-        if (hadRuntimeError) System.exit(70);
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        List<Stmt> statements = cache == null ? null : cache.load(bytes);
+        if (statements == null) {
+            statements = parse(source(bytes), reporter);
+            if (cache != null && !reporter.hadError) cache.store(bytes, statements);
+        }
+
+        //what the program printed is written out whatever stopped it.
+        try {
+            if (!reporter.hadError) execute(statements);
+        }
+        finally {
+            output.flush();
+        }
+        if (counters != null) counters.print(System.err);
+        if (reporter.hadError) System.exit(65);
+        if (reporter.hadRuntimeError) System.exit(70);
     }
 
     //starts reading console input and executes each entered command
@@ -49,49 +146,85 @@ public class Lox {
             System.out.print("> ");
             String line = reader.readLine();
             if (line == null) break;
-            run(line);
-            hadError = false;
+            try {
+                run(line);
+            }
+            finally {
+                output.flush();
+            }
+            reporter.reset();
+        }
+    }
+
+    //the characters of a file. ascii files in an ascii compatible charset are scanned straight from the bytes,
+    //anything else is decoded first.
+    private static CharSequence source(ByteBuffer bytes) {
+        Charset charset = Charset.defaultCharset();
+        boolean asciiCompatible = charset.equals(StandardCharsets.UTF_8) ||
+                charset.equals(StandardCharsets.US_ASCII) ||
+                charset.equals(StandardCharsets.ISO_8859_1);
+        if (asciiCompatible && ByteSource.isAscii(bytes)) {
+            return new ByteSource(bytes);
         }
+        return charset.decode(bytes.duplicate());
     }
 
-    //passes the source code as a string to the scanner, receives a list of tokens from the scanner,
-    //passes tokens to parser, receives an abstract syntax tree, passes AST to interpreter,
-    //interpreter executes the code.
+    //parses the source code and executes it.
     private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
+        List<Stmt> statements = parse(source, reporter);
 
-        if (hadError) return;
+        if (reporter.hadError) return;
 
-        interpreter.interpret(statements);
+        execute(statements);
     }
 
-    //calls the report function with a line number and error message.
-    static void error(int line, String message) {
-        report(line, " at end", message);
+    //passes the source code to the scanner, passes the scanner's tokens to the parser,
+    //receives an abstract syntax tree.
+    //the parser pulls tokens from the scanner as it goes. a long source on a machine with more than one processor
+    //is scanned in one go instead, so its top-level functions can be parsed in parallel. a scanning error sends it
+    //back to the usual way.
+    //either way every error the scanner finds is reported before any the parser finds, the same as when the whole
+    //source was scanned before parsing started: the parser's errors are held back until it has pulled the last token.
+    static List<Stmt> parse(CharSequence source, ErrorReporter reporter) {
+        if (source.length() >= PARALLEL_PARSE_LENGTH && Runtime.getRuntime().availableProcessors() > 1) {
+            ErrorReporter scanErrors = new ErrorReporter();
+            List<Token> tokens = new Scanner(source, scanErrors).scanTokens();
+            if (!scanErrors.hadError) return ParallelParser.parse(tokens, reporter);
+        }
+
+        ErrorReporter parseErrors = new ErrorReporter();
+        Scanner scanner = new Scanner(source, reporter);
+        Parser parser = new Parser(scanner, parseErrors);
+        List<Stmt> statements = parser.parse();
+        reporter.report(parseErrors);
+        return statements;
     }
 
-    //calls the report function with a token and error message.
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, " at end", message);
+    //prepares the AST, then passes it to the interpreter (or the vm), interpreter executes the code.
+    private static void execute(List<Stmt> statements) {
+        statements = prepare(statements, reporter, optimize);
+
+        if (reporter.hadError) return;
+
+        if (useVm) {
+            vm.interpret(statements);
         }
         else {
-            report(token.line, " at '" + token.lexeme + "'", message);
+            interpreter.interpret(statements);
         }
     }
 
-    //reports an error with line number and error message.
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
-    }
+    //passes AST to the resolver to work out where each variable lives and report static errors, then to the
+    //optimizer. the optimizer can remove code, so the resolver runs first to report errors in that code too,
+    //and runs again over the optimized tree to work out where its variables live.
+    static List<Stmt> prepare(List<Stmt> statements, ErrorReporter reporter, boolean optimize) {
+        Resolver resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+
+        if (reporter.hadError || !optimize) return statements;
 
-    //prints an error message and line to the console. marks hadError as true to stop execution from happening.
-    private static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
+        statements = new Optimizer().optimize(statements);
+        new Resolver(reporter).resolve(statements);
+        return statements;
     }
-}
\ No newline at end of file
+}
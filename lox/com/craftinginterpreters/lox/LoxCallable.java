@@ -1,8 +1,7 @@
 package com.craftinginterpreters.lox;
 
-import java.util.List;
-
+//anything that can be called. the caller has already checked that there are exactly arity() arguments.
 interface LoxCallable {
     int arity();
-    Object call(Interpreter interpreter, List<Object> arguments);
+    Object call(Interpreter interpreter, Object[] arguments);
 }
@@ -0,0 +1,34 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+//a queue lox tasks pass values through, made by the "channel" native. "send" adds a value without waiting,
+//"receive" waits until there is a value and takes the oldest one. everything a task did before sending a value is
+//visible to the task that receives it.
+class LoxChannel {
+    //the queue can't hold java's null, so lox's null is sent as this instead.
+    private static final Object NULL = new Object();
+
+    private final BlockingQueue<Object> values = new LinkedBlockingQueue<>();
+
+    void send(Object value) {
+        values.add(value == null ? NULL : value);
+    }
+
+    Object receive() {
+        try {
+            Object value = values.take();
+            return value == NULL ? null : value;
+        }
+        catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw NativeFunction.error("Interrupted while receiving from a channel.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
@@ -0,0 +1,248 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+//the text of a lox program that is being edited, kept parsed as it changes, for editors and other tools.
+//the program is kept as a list of segments, one for each top-level declaration, running from where the declaration
+//starts to where the next one starts. an edit only scans and parses again from the declaration before the one the
+//edit starts in (that one could run into the edited text), and stops as soon as a declaration ends where an old
+//one after the edit used to start, since from there on the text, and so the parse, is the same as before.
+//the declarations before and after that keep the syntax trees they already had.
+//an edit that adds or removes lines moves every later declaration to other lines without parsing them again. a
+//segment only remembers the line its tree and its errors were made on, the errors are moved when they're asked for
+//and the tree is copied onto its new lines when a script is made from the document.
+public class LoxDocument {
+    private final StringBuilder text;
+    private final List<Segment> segments = new ArrayList<>();
+
+    //errors in a document that has no declarations at all, from characters the scanner couldn't make into tokens.
+    private List<String> strayErrors = new ArrayList<>();
+
+    //the document prepared to run, until the next edit.
+    private LoxEngine.Script script = null;
+
+    //one top-level declaration, what it parsed to, and the errors found scanning and parsing it.
+    //the first segment starts at the start of the text, the others at the first token of their declaration.
+    private static class Segment {
+        int start;
+        int line;
+        Stmt statement;
+        //the line the tree is on, it's moved to line the next time the tree is asked for.
+        int treeLine;
+        //the errors the scanner and the parser reported, as they were when the declaration was parsed on parsedLine.
+        List<String> scanErrors;
+        List<String> parseErrors;
+        final int parsedLine;
+
+        Segment(int start, int line) {
+            this.start = start;
+            this.line = line;
+            this.treeLine = line;
+            this.parsedLine = line;
+        }
+
+        Stmt statement() {
+            if (treeLine != line) {
+                statement = new LineShifter(line - treeLine).shift(statement);
+                treeLine = line;
+            }
+            return statement;
+        }
+
+        static void errors(List<String> errors, int lines, List<String> into) {
+            for (String error : errors) {
+                into.add(ErrorReporter.moved(error, lines));
+            }
+        }
+    }
+
+    //the scanner's tokens, remembering where the last one handed out starts. the parser always holds exactly one
+    //token it hasn't used yet, so after a declaration that's where the next declaration starts.
+    private static class Tokens implements Iterator<Token> {
+        private final Scanner scanner;
+        int start;
+        int line;
+
+        Tokens(Scanner scanner) {
+            this.scanner = scanner;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return scanner.hasNext();
+        }
+
+        @Override
+        public Token next() {
+            Token token = scanner.next();
+            start = scanner.start();
+            line = scanner.startLine();
+            return token;
+        }
+    }
+
+    public LoxDocument(String text) {
+        this.text = new StringBuilder(text);
+        reparse(0, 0, 0, 0);
+    }
+
+    public String text() {
+        return text.toString();
+    }
+
+    //replaces the text between start and end with the replacement, then parses what the edit could have changed.
+    public void edit(int start, int end, String replacement) {
+        if (start < 0 || end < start || end > text.length()) {
+            throw new IndexOutOfBoundsException("Edit " + start + ".." + end + " outside the text.");
+        }
+
+        int lines = lines(replacement, 0, replacement.length()) - lines(text, start, end);
+        text.replace(start, end, replacement);
+        script = null;
+
+        int first = Math.max(0, segmentAt(start) - 1);
+        reparse(first, start + replacement.length(), replacement.length() - (end - start), lines);
+    }
+
+    //the document prepared to run with a LoxEngine, made from the trees the declarations already have, or the errors
+    //that stop it from running. it's made again after an edit, the resolver and optimizer go over every declaration
+    //but nothing is parsed again.
+    public LoxEngine.Script script() {
+        if (script == null) script = LoxEngine.prepare(statements(), errors());
+        return script;
+    }
+
+    //the program, one statement for each top-level declaration. a declaration with an error is null, the same as in
+    //the list the parser makes for the whole text.
+    List<Stmt> statements() {
+        List<Stmt> statements = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            statements.add(segment.statement());
+        }
+        return statements;
+    }
+
+    //the errors the scanner and the parser report for the whole text, in the order they report them: every error the
+    //scanner finds, then every error the parser finds.
+    public List<String> errors() {
+        List<String> errors = new ArrayList<>(strayErrors);
+        for (Segment segment : segments) {
+            Segment.errors(segment.scanErrors, segment.line - segment.parsedLine, errors);
+        }
+        for (Segment segment : segments) {
+            Segment.errors(segment.parseErrors, segment.line - segment.parsedLine, errors);
+        }
+        return errors;
+    }
+
+    //parses from the start of segment first until a declaration ends where an old segment past the end of the edit
+    //starts, and puts the new segments in place of the old ones in between. editEnd is where the edit ends in the
+    //new text, delta how far it moved the text after it, and lines how many lines it moved it.
+    private void reparse(int first, int editEnd, int delta, int lines) {
+        int offset = first < segments.size() ? segments.get(first).start : 0;
+        int line = first < segments.size() ? segments.get(first).line : 1;
+
+        ErrorReporter scanReporter = new ErrorReporter();
+        ErrorReporter parseReporter = new ErrorReporter();
+        Tokens tokens = new Tokens(new Scanner(text, offset, line, scanReporter));
+        Parser parser = new Parser(tokens, parseReporter);
+
+        List<Segment> parsed = new ArrayList<>();
+        int resume = segments.size();
+        int scanReported = 0;
+        int parseReported = 0;
+        while (!parser.done()) {
+            Segment segment = new Segment(offset, line);
+            segment.statement = parser.nextDeclaration();
+            List<String> scanMessages = scanReporter.messages();
+            List<String> parseMessages = parseReporter.messages();
+            segment.scanErrors = new ArrayList<>(scanMessages.subList(scanReported, scanMessages.size()));
+            segment.parseErrors = new ArrayList<>(parseMessages.subList(parseReported, parseMessages.size()));
+            scanReported = scanMessages.size();
+            parseReported = parseMessages.size();
+            parsed.add(segment);
+
+            offset = tokens.start;
+            line = tokens.line;
+            if (offset >= editEnd) {
+                int old = oldSegmentAt(offset - delta, first + 1);
+                if (old != -1) {
+                    resume = old;
+                    break;
+                }
+            }
+        }
+
+        //anything reported without a declaration to go with it came from the end of the text. the parser only reports
+        //errors in declarations, so these are all the scanner's.
+        List<String> scanMessages = scanReporter.messages();
+        List<String> stray = new ArrayList<>(scanMessages.subList(scanReported, scanMessages.size()));
+        if (first == 0 && parsed.isEmpty()) {
+            strayErrors = stray;
+        }
+        else if (parsed.isEmpty()) {
+            //the segment before might have been moved since it was parsed, its errors are kept on the old lines.
+            Segment last = segments.get(first - 1);
+            Segment.errors(stray, last.parsedLine - last.line, last.scanErrors);
+        }
+        else {
+            parsed.get(parsed.size() - 1).scanErrors.addAll(stray);
+            if (first == 0) strayErrors = new ArrayList<>();
+        }
+
+        for (int i = resume; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            segment.start += delta;
+            segment.line += lines;
+        }
+
+        List<Segment> replaced = segments.subList(first, resume);
+        replaced.clear();
+        replaced.addAll(parsed);
+        if (!segments.isEmpty()) segments.get(0).start = 0;
+    }
+
+    //the index of the segment the offset is in.
+    private int segmentAt(int offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) / 2;
+            if (segments.get(middle).start <= offset) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    //the index of the segment from from onwards that started at the offset before the edit, or -1 if none did.
+    private int oldSegmentAt(int offset, int from) {
+        int low = from;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) / 2;
+            int start = segments.get(middle).start;
+            if (start == offset) return middle;
+            if (start < offset) {
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int lines(CharSequence text, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,215 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//runs lox programs from java, many of them at the same time. every run gets a tree-walk interpreter of its own,
+//with its own globals and its own error state, so runs on different threads never see each other.
+//a source is scanned, parsed, resolved and optimized once, and the prepared tree is shared by every run of it.
+//the engine remembers the scripts of the sources it compiled most recently (lox.engine.scripts of them, 256 by
+//default), so an embedder running sources it makes up as it goes doesn't fill the heap with them. a caller that
+//runs one source over and over can keep the Script compile gave back instead of relying on the engine to remember.
+//running a tree doesn't change it, apart from the self-specializing binary nodes and call site caches the
+//interpreter keeps in it, and those only ever hold things that stay correct whichever run wrote them.
+//what programs print goes to System.out unless a run is given an output of its own, a LoxOutput.Memory to keep it
+//apart from the other runs say. lines printed to System.out by programs running at the same time can interleave.
+//a run given an ExecutionListener runs in an instrumented interpreter that reports every statement, expression,
+//call and runtime error to it.
+public class LoxEngine implements AutoCloseable {
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    //where runs that aren't given an output print, shared by all of them.
+    private static final LoxOutput STANDARD_OUTPUT = new LoxOutput.Stream(System.out);
+
+    //how many prepared scripts the engine remembers.
+    private static final int CACHED_SCRIPTS = Math.max(0, Integer.getInteger("lox.engine.scripts", 256));
+
+    //the prepared trees of the sources compiled most recently, the one used longest ago is forgotten first.
+    private final Map<String, Script> scripts = Collections.synchronizedMap(
+            new LinkedHashMap<String, Script>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Script> eldest) {
+                    return size() > CACHED_SCRIPTS;
+                }
+            });
+
+    //an engine with a thread for each processor.
+    public LoxEngine() {
+        this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    //an engine that runs programs on the given executor, which it leaves running when it's closed.
+    public LoxEngine(ExecutorService executor) {
+        this(executor, false);
+    }
+
+    private LoxEngine(ExecutorService executor, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    //a source that has been prepared to run, or the static errors that stop it from running.
+    public static final class Script {
+        final List<Stmt> statements;
+        final List<String> errors;
+
+        private Script(List<Stmt> statements, List<String> errors) {
+            this.statements = statements;
+            this.errors = errors;
+        }
+
+        public boolean hadError() {
+            return !errors.isEmpty();
+        }
+
+        public List<String> errors() {
+            return errors;
+        }
+    }
+
+    //how one run of a program ended.
+    public static final class Result {
+        private final List<String> errors;
+        private final boolean hadError;
+        private final boolean hadRuntimeError;
+
+        private Result(List<String> errors, boolean hadError, boolean hadRuntimeError) {
+            this.errors = errors;
+            this.hadError = hadError;
+            this.hadRuntimeError = hadRuntimeError;
+        }
+
+        //true if the program had static errors and never ran.
+        public boolean hadError() {
+            return hadError;
+        }
+
+        //true if a runtime error stopped the program.
+        public boolean hadRuntimeError() {
+            return hadRuntimeError;
+        }
+
+        //the error messages, in the same format the command line prints them.
+        public List<String> errors() {
+            return errors;
+        }
+    }
+
+    //prepares a source to run, or gives back the script it was already prepared into.
+    //two threads compiling the same new source at once might both prepare it, only one of the scripts is kept.
+    public Script compile(String source) {
+        Script script = scripts.get(source);
+        if (script != null) return script;
+
+        ErrorReporter reporter = new ErrorReporter();
+        List<Stmt> statements = Lox.parse(source, reporter);
+        script = prepare(statements, reporter.messages());
+        Script existing = scripts.putIfAbsent(source, script);
+        return existing != null ? existing : script;
+    }
+
+    //prepares parsed statements to run, unless parsing them reported errors.
+    static Script prepare(List<Stmt> statements, List<String> errors) {
+        if (!errors.isEmpty()) {
+            return new Script(Collections.unmodifiableList(statements), Collections.unmodifiableList(errors));
+        }
+
+        ErrorReporter reporter = new ErrorReporter();
+        statements = Lox.prepare(statements, reporter, true);
+        return new Script(Collections.unmodifiableList(statements),
+                Collections.unmodifiableList(reporter.messages()));
+    }
+
+    //runs a source on the calling thread.
+    public Result run(String source) {
+        return run(compile(source));
+    }
+
+    //runs a script on the calling thread, in a new interpreter.
+    public Result run(Script script) {
+        return run(script, STANDARD_OUTPUT);
+    }
+
+    //runs a source on the calling thread, printing to the given output.
+    public Result run(String source, LoxOutput output) {
+        return run(compile(source), output);
+    }
+
+    //runs a script on the calling thread, in a new interpreter printing to the given output.
+    //the output is flushed when the program finishes.
+    public Result run(Script script, LoxOutput output) {
+        if (script.hadError()) return new Result(script.errors, true, false);
+
+        ErrorReporter reporter = new ErrorReporter();
+        return run(script, output, reporter, new Interpreter(reporter, output));
+    }
+
+    //runs a source on the calling thread, printing to the given output and reporting everything the program does
+    //to a listener. a run with a listener is a lot slower than one without.
+    public Result run(String source, LoxOutput output, ExecutionListener listener) {
+        return run(compile(source), output, listener);
+    }
+
+    //runs a script on the calling thread, in a new instrumented interpreter printing to the given output and
+    //reporting everything the program does to a listener.
+    public Result run(Script script, LoxOutput output, ExecutionListener listener) {
+        if (script.hadError()) return new Result(script.errors, true, false);
+
+        ErrorReporter reporter = new ErrorReporter();
+        return run(script, output, reporter, new InstrumentedInterpreter(reporter, output, listener));
+    }
+
+    //runs a script in an interpreter that reports its errors to reporter, then flushes the output.
+    private Result run(Script script, LoxOutput output, ErrorReporter reporter, Interpreter interpreter) {
+        interpreter.interpret(script.statements);
+        output.flush();
+        return new Result(Collections.unmodifiableList(reporter.messages()), false, reporter.hadRuntimeError);
+    }
+
+    //runs a source on the engine's executor. a source that wasn't compiled yet is compiled there too.
+    public Future<Result> submit(String source) {
+        return executor.submit(() -> run(source));
+    }
+
+    //runs a script on the engine's executor.
+    public Future<Result> submit(Script script) {
+        return executor.submit(() -> run(script));
+    }
+
+    //runs a source on the engine's executor, printing to the given output.
+    public Future<Result> submit(String source, LoxOutput output) {
+        return executor.submit(() -> run(source, output));
+    }
+
+    //runs a script on the engine's executor, printing to the given output.
+    public Future<Result> submit(Script script, LoxOutput output) {
+        return executor.submit(() -> run(script, output));
+    }
+
+    //runs a source on the engine's executor, printing to the given output and reporting to a listener.
+    public Future<Result> submit(String source, LoxOutput output, ExecutionListener listener) {
+        return executor.submit(() -> run(source, output, listener));
+    }
+
+    //runs a script on the engine's executor, printing to the given output and reporting to a listener.
+    public Future<Result> submit(Script script, LoxOutput output, ExecutionListener listener) {
+        return executor.submit(() -> run(script, output, listener));
+    }
+
+    //forgets every prepared script, the next run of each source prepares it again.
+    public void clear() {
+        scripts.clear();
+    }
+
+    //shuts down the engine's own thread pool once the runs already submitted finish.
+    @Override
+    public void close() {
+        if (ownsExecutor) executor.shutdown();
+    }
+}
@@ -1,7 +1,5 @@
 package com.craftinginterpreters.lox;
 
-import java.util.List;
-
 public class LoxFunction implements LoxCallable {
     private final Stmt.Function declaration;
     private final Environment closure;
@@ -16,24 +14,69 @@ public class LoxFunction implements LoxCallable {
         return declaration.params.size();
     }
 
+    //copies the arguments into the slots of a new frame, then runs the body.
     @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(closure);
-        for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        Environment environment = frame();
+        for (int i = 0; i < arguments.length; i++) {
+            environment.defineAt(i, arguments[i]);
         }
 
+        return call(interpreter, environment);
+    }
+
+    //makes the environment a call runs in. the caller defines the arguments into its first slots,
+    //in parameter order, before passing it to call. the rest of the slots are for the body's locals.
+    Environment frame() {
+        return new Environment(closure, declaration.slots);
+    }
+
+    //runs the body in a frame that already holds the arguments.
+    //this is also the trampoline for tail calls. when the body returns by tail calling a lox function,
+    //that function's body runs next in this same loop, instead of in a nested java call.
+    //the interpreter is told which function is running, a tail call exits the caller before entering the callee.
+    Object call(Interpreter interpreter, Environment environment) {
+        LoxFunction function = this;
+        interpreter.enter(function);
         try {
-            interpreter.executeBlock(declaration.body, environment);
+            for (;;) {
+                Completion completion = interpreter.executeBlock(function.declaration.body, environment);
+                if (completion == Completion.TAIL_CALL) {
+                    function = interpreter.takeTailCallee();
+                    environment = interpreter.takeTailFrame();
+                    interpreter.exit();
+                    interpreter.enter(function);
+                    continue;
+                }
+
+                if (completion == Completion.RETURN) {
+                    return interpreter.takeReturnValue();
+                }
+                return null;
+            }
         }
-        catch (Return returnValue) {
-            return returnValue.value;
+        finally {
+            interpreter.exit();
         }
-        return null;
+    }
+
+    //the name the function was declared with.
+    String name() {
+        return declaration.name.lexeme();
+    }
+
+    //the declaration the function was made from, shared by every closure made from it.
+    Stmt.Function declaration() {
+        return declaration;
+    }
+
+    //the line the function was declared on.
+    int line() {
+        return declaration.line;
     }
 
     @Override
     public String toString() {
-        return "<fn " + declaration.name.lexeme + ">";
+        return "<fn " + name() + ">";
     }
 }
@@ -0,0 +1,213 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+
+//a lox list, a growable array of values made by a list literal or the list native.
+//while every element is a number the elements are kept unboxed in a double[], which is most lists a program makes
+//for arithmetic. storing anything else switches the list over to an Object[] for good. the two look the same to a
+//program, numbers read from the double[] are boxed with Numbers.box as they're read.
+//the interpreter reads and writes the numbers of a double[] list unboxed, and the bulk natives (sum, sort) run
+//straight over the double[] without boxing any of them.
+//like variables, a list several tasks change at once needs a channel or a join to order the changes.
+final class LoxList {
+    private static final int MIN_CAPACITY = 8;
+
+    //exactly one of them is set, numbers while every element is a number.
+    private double[] numbers;
+    private Object[] objects;
+    private int size;
+
+    //an empty list with room for capacity elements.
+    LoxList(int capacity) {
+        this.numbers = new double[Math.max(capacity, MIN_CAPACITY)];
+    }
+
+    //a list of size copies of one value.
+    LoxList(int size, Object value) {
+        if (value instanceof Double) {
+            numbers = new double[Math.max(size, MIN_CAPACITY)];
+            Arrays.fill(numbers, 0, size, (double)value);
+        }
+        else {
+            objects = new Object[Math.max(size, MIN_CAPACITY)];
+            Arrays.fill(objects, 0, size, value);
+        }
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    //checks if the elements are kept unboxed, only then can number be called.
+    boolean isNumbers() {
+        return numbers != null;
+    }
+
+    //checks that a lox value is an index into the list and gives it back as an int. the token is the bracket of the
+    //index expression, natives pass null and the call fills it in.
+    int index(Token bracket, Object index) {
+        if (!(index instanceof Double)) throw new RuntimeError(bracket, "List index must be a whole number.");
+
+        double value = (double)index;
+        int integer = (int)value;
+        if (integer != value) throw new RuntimeError(bracket, "List index must be a whole number.");
+        if (integer < 0 || integer >= size) throw new RuntimeError(bracket, "List index out of range.");
+        return integer;
+    }
+
+    Object get(int index) {
+        if (numbers != null) return Numbers.box(numbers[index]);
+        return objects[index];
+    }
+
+    //an element of a list that is kept unboxed.
+    double number(int index) {
+        return numbers[index];
+    }
+
+    void set(int index, Object value) {
+        if (numbers != null) {
+            if (value instanceof Double) {
+                numbers[index] = (double)value;
+                return;
+            }
+            box();
+        }
+        objects[index] = value;
+    }
+
+    //stores a number without boxing it, unless the list already holds other values.
+    void set(int index, double value) {
+        if (numbers != null) {
+            numbers[index] = value;
+        }
+        else {
+            objects[index] = Numbers.box(value);
+        }
+    }
+
+    void add(Object value) {
+        if (numbers != null && !(value instanceof Double)) box();
+        ensureCapacity(size + 1);
+        if (numbers != null) {
+            numbers[size++] = (double)value;
+        }
+        else {
+            objects[size++] = value;
+        }
+    }
+
+    void add(double value) {
+        ensureCapacity(size + 1);
+        if (numbers != null) {
+            numbers[size++] = value;
+        }
+        else {
+            objects[size++] = Numbers.box(value);
+        }
+    }
+
+    //removes the last element and gives it back.
+    Object removeLast() {
+        if (size == 0) throw NativeFunction.error("Can't pop from an empty list.");
+
+        size--;
+        if (numbers != null) return Numbers.box(numbers[size]);
+
+        Object value = objects[size];
+        objects[size] = null;
+        return value;
+    }
+
+    //adds up the elements, which all have to be numbers.
+    double sum() {
+        double sum = 0;
+        if (numbers != null) {
+            for (int i = 0; i < size; i++) {
+                sum += numbers[i];
+            }
+            return sum;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (!(objects[i] instanceof Double)) throw NativeFunction.error("Can only sum a list of numbers.");
+            sum += (double)objects[i];
+        }
+        return sum;
+    }
+
+    //sorts a list of numbers or a list of strings in place. a list of numbers that was switched over to an Object[]
+    //goes back to a double[], it's sorted there.
+    void sort() {
+        if (numbers == null && allNumbers()) unbox();
+
+        if (numbers != null) {
+            Arrays.sort(numbers, 0, size);
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (!Rope.isString(objects[i])) {
+                throw NativeFunction.error("Can only sort a list of numbers or a list of strings.");
+            }
+            objects[i] = objects[i].toString();
+        }
+        Arrays.sort(objects, 0, size);
+    }
+
+    private boolean allNumbers() {
+        for (int i = 0; i < size; i++) {
+            if (!(objects[i] instanceof Double)) return false;
+        }
+        return true;
+    }
+
+    //switches a list of numbers over to an Object[].
+    private void box() {
+        objects = new Object[numbers.length];
+        for (int i = 0; i < size; i++) {
+            objects[i] = Numbers.box(numbers[i]);
+        }
+        numbers = null;
+    }
+
+    //switches a list whose elements are all numbers back to a double[].
+    private void unbox() {
+        numbers = new double[objects.length];
+        for (int i = 0; i < size; i++) {
+            numbers[i] = (double)objects[i];
+        }
+        objects = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int length = numbers != null ? numbers.length : objects.length;
+        if (capacity <= length) return;
+
+        int grown = Math.max(capacity, length * 2);
+        if (numbers != null) {
+            numbers = Arrays.copyOf(numbers, grown);
+        }
+        else {
+            objects = Arrays.copyOf(objects, grown);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (!Interpreter.startStringify(this)) return "[...]";
+
+        try {
+            StringBuilder text = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) text.append(", ");
+                text.append(Interpreter.stringify(get(i)));
+            }
+            return text.append("]").toString();
+        }
+        finally {
+            Interpreter.finishStringify(this);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.craftinginterpreters.lox;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//a lox map, made by the map native. any value can be a key, keys are equal when == says they are, and the entries
+//keep the order they were first added in. reading a key that isn't there gives back null.
+final class LoxMap {
+    private final Map<Object, Object> entries = new LinkedHashMap<>();
+
+    int size() {
+        return entries.size();
+    }
+
+    Object get(Object key) {
+        return entries.get(key(key));
+    }
+
+    void put(Object key, Object value) {
+        entries.put(key(key), value);
+    }
+
+    boolean has(Object key) {
+        return entries.containsKey(key(key));
+    }
+
+    //removes a key and gives back the value it had, or null.
+    Object remove(Object key) {
+        return entries.remove(key(key));
+    }
+
+    //the keys, in the order they were added.
+    LoxList keys() {
+        LoxList keys = new LoxList(entries.size());
+        for (Object key : entries.keySet()) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    //a string can be a rope or a java string with the same characters, ropes are flattened so both find the
+    //same entry.
+    private static Object key(Object key) {
+        if (key instanceof Rope) return key.toString();
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        if (!Interpreter.startStringify(this)) return "{...}";
+
+        try {
+            StringBuilder text = new StringBuilder("{");
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                if (text.length() > 1) text.append(", ");
+                text.append(Interpreter.stringify(entry.getKey())).append(": ")
+                        .append(Interpreter.stringify(entry.getValue()));
+            }
+            return text.append("}").toString();
+        }
+        finally {
+            Interpreter.finishStringify(this);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+//where a program's print statements go. tasks print from several threads at once, so every sink has to be safe
+//to call from any thread, and the lines of different prints never mix.
+public interface LoxOutput {
+    //prints one line.
+    void println(String line);
+
+    //makes everything printed so far visible, called at exit, before a runtime error is reported, and by the
+    //"flush" native.
+    void flush();
+
+    //prints each line to a stream as soon as it's printed, for a terminal where someone watches the output.
+    final class Stream implements LoxOutput {
+        private final PrintStream out;
+
+        public Stream(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void println(String line) {
+            out.println(line);
+        }
+
+        @Override
+        public void flush() {
+            out.flush();
+        }
+    }
+
+    //collects lines in a large buffer and writes them out when it fills up or is flushed, so a program that prints
+    //a lot makes one write for many lines instead of one for each of them.
+    //like a PrintStream, it never throws: output that can't be written, to a closed pipe say, is dropped.
+    final class Buffered implements LoxOutput {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final Writer out;
+
+        public Buffered(OutputStream out) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset()), BUFFER_SIZE);
+        }
+
+        @Override
+        public synchronized void println(String line) {
+            try {
+                out.write(line);
+                out.write(System.lineSeparator());
+            }
+            catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            try {
+                out.flush();
+            }
+            catch (IOException ignored) {
+            }
+        }
+    }
+
+    //keeps everything printed in memory, for programs run from java that want to look at their output.
+    final class Memory implements LoxOutput {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public synchronized void println(String line) {
+            text.append(line).append('\n');
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        //everything printed so far, each line ended by a newline.
+        public synchronized String text() {
+            return text.toString();
+        }
+
+        //forgets everything printed so far.
+        public synchronized void clear() {
+            text.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//a lox function running on a thread of its own, made by the "spawn" native and waited for by "join".
+//tasks run on a shared pool of daemon threads that grows as needed, so a task blocked on a channel never stops
+//another one from starting, and idle threads are reused. a program doesn't wait for its tasks when it ends,
+//it joins the ones whose work it needs.
+class LoxTask {
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private static final ExecutorService threads = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "lox-task-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Future<Object> result;
+
+    //starts running the body. a runtime error in a task is reported by the task itself, as soon as it happens.
+    LoxTask(Callable<Object> body) {
+        this.result = threads.submit(body);
+    }
+
+    //waits for the task to finish and gives back the value its function returned.
+    //a java error that stopped the task is thrown again as it is, so the joining interpreter handles it the way it
+    //would its own, a stack overflow becomes a runtime error at the join. any other failure is a runtime error too.
+    Object join() {
+        try {
+            return result.get();
+        }
+        catch (ExecutionException error) {
+            if (error.getCause() instanceof Error) throw (Error)error.getCause();
+            throw NativeFunction.error("Joined a task that failed.");
+        }
+        catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw NativeFunction.error("Interrupted while joining a task.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
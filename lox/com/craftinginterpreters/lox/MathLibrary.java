@@ -0,0 +1,15 @@
+package com.craftinginterpreters.lox;
+
+//natives over numbers, which calls bind to as intrinsics.
+class MathLibrary implements NativeLibrary {
+    @Override
+    public void define(NativeRegistry natives) {
+        natives.define("abs", (double x) -> Math.abs(x));
+        natives.define("floor", (double x) -> Math.floor(x));
+        natives.define("ceil", (double x) -> Math.ceil(x));
+        natives.define("sqrt", (double x) -> Math.sqrt(x));
+        natives.define("min", (double a, double b) -> Math.min(a, b));
+        natives.define("max", (double a, double b) -> Math.max(a, b));
+        natives.define("pow", (double a, double b) -> Math.pow(a, b));
+    }
+}
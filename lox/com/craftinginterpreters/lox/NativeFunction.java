@@ -0,0 +1,76 @@
+package com.craftinginterpreters.lox;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+//a function written in java that lox programs can call.
+class NativeFunction implements LoxCallable {
+    //the error a native over numbers raises when it's given something else.
+    static final String NOT_NUMBERS = "Arguments must be numbers.";
+
+    private final int arity;
+    private final NativeRegistry.Body body;
+
+    //a native over numbers, the same function on unboxed numbers, which is how intrinsic calls run it.
+    //at most one of them is set, the one for its arity.
+    final DoubleUnaryOperator unary;
+    final DoubleBinaryOperator binary;
+
+    NativeFunction(int arity, NativeRegistry.Body body) {
+        this.arity = arity;
+        this.body = body;
+        this.unary = null;
+        this.binary = null;
+    }
+
+    NativeFunction(DoubleUnaryOperator function) {
+        this.arity = 1;
+        this.body = arguments -> {
+            checkNumbers(arguments);
+            return Numbers.box(function.applyAsDouble((double)arguments[0]));
+        };
+        this.unary = function;
+        this.binary = null;
+    }
+
+    NativeFunction(DoubleBinaryOperator function) {
+        this.arity = 2;
+        this.body = arguments -> {
+            checkNumbers(arguments);
+            return Numbers.box(function.applyAsDouble((double)arguments[0], (double)arguments[1]));
+        };
+        this.unary = null;
+        this.binary = function;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    boolean isNumeric() {
+        return unary != null || binary != null;
+    }
+
+    //the interpreter is null when the vm calls a native, natives never need it.
+    @Override
+    public Object call(Interpreter interpreter, Object[] arguments) {
+        return body.call(arguments);
+    }
+
+    private static void checkNumbers(Object[] arguments) {
+        for (Object argument : arguments) {
+            if (!(argument instanceof Double)) throw error(NOT_NUMBERS);
+        }
+    }
+
+    //a runtime error raised by a native, the call site fills in the token.
+    static RuntimeError error(String message) {
+        return new RuntimeError(null, message);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
@@ -0,0 +1,11 @@
+package com.craftinginterpreters.lox;
+
+//a set of natives written in java, defined in every interpreter and vm. libraries are found with ServiceLoader:
+//a jar on the class path lists its implementations in META-INF/services/com.craftinginterpreters.lox.NativeLibrary,
+//each with a public constructor that takes no arguments.
+//the natives a library defines are shared by every program running in the jvm, possibly on several threads at
+//once, so they must not keep state of their own.
+public interface NativeLibrary {
+    //defines the library's natives in the registry.
+    void define(NativeRegistry natives);
+}
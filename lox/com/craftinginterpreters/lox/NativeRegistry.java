@@ -0,0 +1,74 @@
+package com.craftinginterpreters.lox;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+//the natives every interpreter and vm starts with: the ones built into lox, then the ones every NativeLibrary
+//found with ServiceLoader defines. a library can replace a native by defining one with the same name.
+//natives over numbers can also be called as intrinsics: the resolver binds a call to a global with the name of one
+//straight to it, and the interpreter calls it with unboxed arguments, as long as the global still holds it.
+public final class NativeRegistry {
+    private static final NativeRegistry standard = load();
+
+    private final Map<Symbol, NativeFunction> natives = new LinkedHashMap<>();
+
+    private NativeRegistry() {
+    }
+
+    //what a native does. the caller has already checked the number of arguments.
+    public interface Body {
+        Object call(Object[] arguments);
+    }
+
+    //defines a native taking arity arguments.
+    public void define(String name, int arity, Body body) {
+        natives.put(Symbol.intern(name), new NativeFunction(arity, body));
+    }
+
+    //defines a native taking one number and giving back a number.
+    public void define(String name, DoubleUnaryOperator function) {
+        natives.put(Symbol.intern(name), new NativeFunction(function));
+    }
+
+    //defines a native taking two numbers and giving back a number.
+    public void define(String name, DoubleBinaryOperator function) {
+        natives.put(Symbol.intern(name), new NativeFunction(function));
+    }
+
+    //a runtime error for a native to throw, it's reported at the call that failed.
+    public static RuntimeError error(String message) {
+        return NativeFunction.error(message);
+    }
+
+    static NativeRegistry standard() {
+        return standard;
+    }
+
+    private static NativeRegistry load() {
+        NativeRegistry registry = new NativeRegistry();
+        new CoreLibrary().define(registry);
+        new MathLibrary().define(registry);
+        new CollectionLibrary().define(registry);
+        for (NativeLibrary library : ServiceLoader.load(NativeLibrary.class)) {
+            library.define(registry);
+        }
+        return registry;
+    }
+
+    //defines every native in a global environment.
+    void defineIn(Environment globals) {
+        for (Map.Entry<Symbol, NativeFunction> entry : natives.entrySet()) {
+            globals.define(entry.getKey(), entry.getValue());
+        }
+    }
+
+    //the native over numbers a call to the global name with argCount arguments can be bound to, or null.
+    NativeFunction intrinsic(Symbol name, int argCount) {
+        NativeFunction function = natives.get(name);
+        if (function == null || !function.isNumeric() || function.arity() != argCount) return null;
+        return function;
+    }
+}
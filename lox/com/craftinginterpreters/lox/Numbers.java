@@ -0,0 +1,33 @@
+package com.craftinginterpreters.lox;
+
+//boxes numbers, handing out a preallocated Double for whole numbers in a small range instead of a new one each time.
+//loop counters, indices and the results of comparing and counting are almost always small whole numbers, so most
+//of the numbers a program makes never allocate. the range is -128 to 1024 by default, the lox.numbers.low and
+//lox.numbers.high system properties change it.
+//lox compares numbers by value, never by identity, so sharing boxes changes nothing a program can see.
+//booleans need nothing like this, boxing a boolean always gives back Boolean.TRUE or Boolean.FALSE.
+final class Numbers {
+    private static final int LOW = Integer.getInteger("lox.numbers.low", -128);
+    private static final int HIGH = Math.max(LOW - 1, Integer.getInteger("lox.numbers.high", 1024));
+
+    private static final Double[] cache = new Double[HIGH - LOW + 1];
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = (double)(LOW + i);
+        }
+    }
+
+    private Numbers() {
+    }
+
+    static Double box(double value) {
+        int integer = (int)value;
+        //compares bit patterns, so -0 and nan, which convert to the integer 0, aren't taken for 0.
+        if (Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(integer) &&
+                integer >= LOW && integer <= HIGH) {
+            return cache[integer - LOW];
+        }
+        return value;
+    }
+}
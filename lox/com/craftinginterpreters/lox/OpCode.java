@@ -0,0 +1,60 @@
+package com.craftinginterpreters.lox;
+
+//the instruction set of the bytecode vm. each instruction is one byte, some are followed by operands.
+//operands marked "short" are two bytes, high byte first.
+final class OpCode {
+    //pushes constants[short].
+    static final byte CONSTANT = 0;
+    static final byte NULL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte POP = 4;
+
+    //variables. locals are followed by a short depth and a short slot (DEFINE_LOCAL only by the slot, it always
+    //defines in the current environment), globals by a short constant holding the name token.
+    static final byte GET_LOCAL = 5;
+    static final byte SET_LOCAL = 6;
+    static final byte DEFINE_LOCAL = 7;
+    static final byte GET_GLOBAL = 8;
+    static final byte SET_GLOBAL = 9;
+    static final byte DEFINE_GLOBAL = 10;
+
+    //operators.
+    static final byte EQUAL = 11;
+    static final byte NOT_EQUAL = 12;
+    static final byte GREATER = 13;
+    static final byte GREATER_EQUAL = 14;
+    static final byte LESS = 15;
+    static final byte LESS_EQUAL = 16;
+    static final byte ADD = 17;
+    static final byte SUBTRACT = 18;
+    static final byte MULTIPLY = 19;
+    static final byte DIVIDE = 20;
+    static final byte NOT = 21;
+    static final byte NEGATE = 22;
+
+    static final byte PRINT = 23;
+
+    //control flow. jumps are followed by a short offset, JUMP_IF_FALSE leaves the condition on the stack.
+    static final byte JUMP = 24;
+    static final byte JUMP_IF_FALSE = 25;
+    static final byte LOOP = 26;
+
+    //functions. CALL is followed by a one byte argument count, CLOSURE by a short constant holding the function.
+    static final byte CALL = 27;
+    static final byte CLOSURE = 28;
+    static final byte RETURN = 29;
+
+    //scopes. PUSH_SCOPE is followed by a short slot count. blocks whose locals live in the enclosing environment
+    //don't push a scope.
+    static final byte PUSH_SCOPE = 30;
+    static final byte POP_SCOPE = 31;
+
+    //lists and maps. BUILD_LIST is followed by a short element count, it pops that many values into a new list.
+    //GET_INDEX pops an index and the list or map under it, SET_INDEX pops a value as well and pushes it back.
+    static final byte BUILD_LIST = 32;
+    static final byte GET_INDEX = 33;
+    static final byte SET_INDEX = 34;
+
+    private OpCode() {}
+}
@@ -0,0 +1,449 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//syntax tree to syntax tree pass that runs before the interpreter (or the vm) sees the program.
+//folds arithmetic, string concatenation, comparisons, equality, not and negation on literals into a single literal,
+//simplifies and/or whose left operand is a literal, and removes code that can never run: branches of ifs with
+//literal conditions, while loops whose condition is a literal false, statements after a return, and expression
+//statements that are only a literal.
+//an operation is only folded if it would succeed at runtime, anything that would raise a runtime error (like
+//adding a number to a string) is left in the tree so the error is still reported when that code runs.
+//blocks that declare nothing are merged into the statement list around them.
+//inside loops that call nothing, arithmetic, comparisons and not over variables the loop never changes are hoisted:
+//the loop gets a hidden local that keeps the expression's value after the first time it's evaluated.
+//subtrees that don't change are reused, so the tree it returns still has to be resolved again.
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    //the loop being optimized, or null if there isn't one or it can't hoist anything.
+    private Loop loop = null;
+
+    //numbers the hidden locals, their names start with a $ so they can't clash with a lox identifier.
+    private int hidden = 0;
+
+    //what a loop changes: the names it assigns anywhere, or declares in its body. a call could change
+    //any variable, so a loop that calls anything is never hoisted from.
+    //also collects the declarations of the hidden locals made for the loop's invariant expressions.
+    private static class Loop {
+        final Set<Symbol> variant = new HashSet<>();
+        boolean calls = false;
+        final List<Stmt> hidden = new ArrayList<>();
+
+        void scan(Expr expr) {
+            if (expr instanceof Expr.Assign) {
+                variant.add(((Expr.Assign)expr).name.symbol);
+                scan(((Expr.Assign)expr).value);
+            }
+            else if (expr instanceof Expr.Binary) {
+                scan(((Expr.Binary)expr).left);
+                scan(((Expr.Binary)expr).right);
+            }
+            else if (expr instanceof Expr.Logical) {
+                scan(((Expr.Logical)expr).left);
+                scan(((Expr.Logical)expr).right);
+            }
+            else if (expr instanceof Expr.Grouping) {
+                scan(((Expr.Grouping)expr).expression);
+            }
+            else if (expr instanceof Expr.Unary) {
+                scan(((Expr.Unary)expr).right);
+            }
+            else if (expr instanceof Expr.Call) {
+                calls = true;
+            }
+            else if (expr instanceof Expr.ListLiteral) {
+                for (Expr element : ((Expr.ListLiteral)expr).elements) scan(element);
+            }
+            else if (expr instanceof Expr.Index) {
+                scan(((Expr.Index)expr).object);
+                scan(((Expr.Index)expr).index);
+            }
+            else if (expr instanceof Expr.SetIndex) {
+                scan(((Expr.SetIndex)expr).object);
+                scan(((Expr.SetIndex)expr).index);
+                scan(((Expr.SetIndex)expr).value);
+            }
+        }
+
+        //function bodies aren't scanned, they only run when called, and a loop that calls is never hoisted from.
+        void scan(Stmt stmt) {
+            if (stmt instanceof Stmt.Expression) {
+                scan(((Stmt.Expression)stmt).expression);
+            }
+            else if (stmt instanceof Stmt.Print) {
+                scan(((Stmt.Print)stmt).expression);
+            }
+            else if (stmt instanceof Stmt.Return) {
+                if (((Stmt.Return)stmt).value != null) scan(((Stmt.Return)stmt).value);
+            }
+            else if (stmt instanceof Stmt.Var) {
+                variant.add(((Stmt.Var)stmt).name.symbol);
+                if (((Stmt.Var)stmt).initializer != null) scan(((Stmt.Var)stmt).initializer);
+            }
+            else if (stmt instanceof Stmt.Function) {
+                variant.add(((Stmt.Function)stmt).name.symbol);
+            }
+            else if (stmt instanceof Stmt.Block) {
+                for (Stmt statement : ((Stmt.Block)stmt).statements) scan(statement);
+            }
+            else if (stmt instanceof Stmt.If) {
+                scan(((Stmt.If)stmt).condition);
+                scan(((Stmt.If)stmt).thenBranch);
+                if (((Stmt.If)stmt).elseBranch != null) scan(((Stmt.If)stmt).elseBranch);
+            }
+            else if (stmt instanceof Stmt.While) {
+                scan(((Stmt.While)stmt).condition);
+                scan(((Stmt.While)stmt).body);
+            }
+        }
+
+        //checks if an expression only reads literals and variables the loop doesn't change, through operators
+        //that can't have side effects. an element of a list or map can change without any variable changing,
+        //so indexing is never pure.
+        boolean isPure(Expr expr) {
+            if (expr instanceof Expr.Literal) return true;
+            if (expr instanceof Expr.Variable) return !variant.contains(((Expr.Variable)expr).name.symbol);
+            if (expr instanceof Expr.Grouping) return isPure(((Expr.Grouping)expr).expression);
+            if (expr instanceof Expr.Unary) return isPure(((Expr.Unary)expr).right);
+            if (expr instanceof Expr.Binary) {
+                return isPure(((Expr.Binary)expr).left) && isPure(((Expr.Binary)expr).right);
+            }
+            return false;
+        }
+
+        static boolean readsVariable(Expr expr) {
+            if (expr instanceof Expr.Variable) return true;
+            if (expr instanceof Expr.Grouping) return readsVariable(((Expr.Grouping)expr).expression);
+            if (expr instanceof Expr.Unary) return readsVariable(((Expr.Unary)expr).right);
+            if (expr instanceof Expr.Binary) {
+                return readsVariable(((Expr.Binary)expr).left) || readsVariable(((Expr.Binary)expr).right);
+            }
+            return false;
+        }
+    }
+
+    //optimizes a list of top-level statements.
+    List<Stmt> optimize(List<Stmt> statements) {
+        return optimizeAll(statements);
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        Expr value = optimize(expr.value);
+        if (value == expr.value) return expr;
+        return new Expr.Assign(expr.name, value);
+    }
+
+    //folds an operator whose operands are both literals, if it can't fail.
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        if (isInvariant(expr)) return hoist(expr, expr.operator);
+
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Object a = ((Expr.Literal)left).value;
+            Object b = ((Expr.Literal)right).value;
+
+            switch (expr.operator.type) {
+                case EQUAL_EQUAL: return new Expr.Literal(Interpreter.isEqual(a, b));
+                case BANG_EQUAL: return new Expr.Literal(!Interpreter.isEqual(a, b));
+                case PLUS:
+                    if (a instanceof String && b instanceof String) {
+                        return new Expr.Literal((String)a + (String)b);
+                    }
+                    break;
+            }
+
+            if (a instanceof Double && b instanceof Double) {
+                double x = (double)a;
+                double y = (double)b;
+                switch (expr.operator.type) {
+                    case PLUS: return new Expr.Literal(x + y);
+                    case MINUS: return new Expr.Literal(x - y);
+                    case STAR: return new Expr.Literal(x * y);
+                    case SLASH: return new Expr.Literal(x / y);
+                    case GREATER: return new Expr.Literal(x > y);
+                    case GREATER_EQUAL: return new Expr.Literal(x >= y);
+                    case LESS: return new Expr.Literal(x < y);
+                    case LESS_EQUAL: return new Expr.Literal(x <= y);
+                }
+            }
+        }
+
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        Expr callee = optimize(expr.callee);
+        boolean changed = callee != expr.callee;
+
+        List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            Expr optimized = optimize(argument);
+            changed |= optimized != argument;
+            arguments.add(optimized);
+        }
+
+        if (!changed) return expr;
+        return new Expr.Call(callee, expr.paren, arguments);
+    }
+
+    //a grouped literal is just the literal.
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr expression = optimize(expr.expression);
+        if (expression instanceof Expr.Literal) return expression;
+
+        if (expression == expr.expression) return expr;
+        return new Expr.Grouping(expression);
+    }
+
+    @Override
+    public Expr visitIndexExpr(Expr.Index expr) {
+        Expr object = optimize(expr.object);
+        Expr index = optimize(expr.index);
+        if (object == expr.object && index == expr.index) return expr;
+        return new Expr.Index(object, expr.bracket, index);
+    }
+
+    //only made by this pass.
+    @Override
+    public Expr visitInvariantExpr(Expr.Invariant expr) {
+        return expr;
+    }
+
+    //a list literal is never folded, each evaluation has to make a new list.
+    @Override
+    public Expr visitListLiteralExpr(Expr.ListLiteral expr) {
+        boolean changed = false;
+        List<Expr> elements = new ArrayList<>(expr.elements.size());
+        for (Expr element : expr.elements) {
+            Expr optimized = optimize(element);
+            changed |= optimized != element;
+            elements.add(optimized);
+        }
+
+        if (!changed) return expr;
+        return new Expr.ListLiteral(expr.bracket, elements);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    //"and" gives back a falsey left operand without evaluating the right one, otherwise it gives back the right one.
+    //"or" is the other way around. so a literal on the left decides which operand the whole expression is.
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+
+        if (left instanceof Expr.Literal) {
+            boolean truthy = Interpreter.isTruthy(((Expr.Literal)left).value);
+            if (expr.operator.type == TokenType.OR) return truthy ? left : right;
+            return truthy ? right : left;
+        }
+
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitSetIndexExpr(Expr.SetIndex expr) {
+        Expr object = optimize(expr.object);
+        Expr index = optimize(expr.index);
+        Expr value = optimize(expr.value);
+        if (object == expr.object && index == expr.index && value == expr.value) return expr;
+        return new Expr.SetIndex(object, expr.bracket, index, value);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        if (isInvariant(expr)) return hoist(expr, expr.operator);
+
+        Expr right = optimize(expr.right);
+
+        if (right instanceof Expr.Literal) {
+            Object value = ((Expr.Literal)right).value;
+            switch (expr.operator.type) {
+                case BANG: return new Expr.Literal(!Interpreter.isTruthy(value));
+                case MINUS:
+                    if (value instanceof Double) return new Expr.Literal(-(double)value);
+                    break;
+            }
+        }
+
+        if (right == expr.right) return expr;
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    //a block's statements are optimized, it stays a block so its scope doesn't change.
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        return line(stmt, new Stmt.Block(optimizeAll(stmt.statements)));
+    }
+
+    //an expression statement that is only a literal does nothing.
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = optimize(stmt.expression);
+        if (expression instanceof Expr.Literal) return null;
+
+        if (expression == stmt.expression) return stmt;
+        return line(stmt, new Stmt.Expression(expression));
+    }
+
+    //a function declared in a loop can run after the loop is over, so nothing in it is hoisted into the loop.
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        Loop enclosing = loop;
+        loop = null;
+        List<Stmt> body = optimizeAll(stmt.body);
+        loop = enclosing;
+        return line(stmt, new Stmt.Function(stmt.name, stmt.params, body));
+    }
+
+    //an if with a literal condition is replaced by the branch that would run.
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = optimize(stmt.condition);
+        Stmt thenBranch = optimizeBranch(stmt.thenBranch);
+        Stmt elseBranch = stmt.elseBranch == null ? null : optimizeBranch(stmt.elseBranch);
+
+        if (condition instanceof Expr.Literal) {
+            return Interpreter.isTruthy(((Expr.Literal)condition).value) ? thenBranch : elseBranch;
+        }
+
+        return line(stmt, new Stmt.If(condition, thenBranch, elseBranch));
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Expr expression = optimize(stmt.expression);
+        if (expression == stmt.expression) return stmt;
+        return line(stmt, new Stmt.Print(expression));
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value == null) return stmt;
+
+        Expr value = optimize(stmt.value);
+        if (value == stmt.value) return stmt;
+        return line(stmt, new Stmt.Return(stmt.keyword, value));
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer == null) return stmt;
+
+        Expr initializer = optimize(stmt.initializer);
+        if (initializer == stmt.initializer) return stmt;
+        return line(stmt, new Stmt.Var(stmt.name, initializer));
+    }
+
+    //a loop whose condition is a literal false never runs its body.
+    //if invariant expressions were hoisted, the loop is wrapped in a block that declares their hidden locals,
+    //so they start out null every time the loop is reached.
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Loop enclosing = loop;
+        loop = new Loop();
+        loop.scan(stmt.condition);
+        loop.scan(stmt.body);
+        if (loop.calls) loop = null;
+
+        Loop current = loop;
+        Expr condition = optimize(stmt.condition);
+        Stmt body = optimizeBranch(stmt.body);
+        loop = enclosing;
+
+        if (condition instanceof Expr.Literal && !Interpreter.isTruthy(((Expr.Literal)condition).value)) {
+            return null;
+        }
+
+        Stmt result = line(stmt, new Stmt.While(condition, body));
+        if (current == null || current.hidden.isEmpty()) return result;
+
+        List<Stmt> statements = new ArrayList<>(current.hidden);
+        statements.add(result);
+        return line(stmt, new Stmt.Block(statements));
+    }
+
+    //checks if an expression in the loop being optimized can be hoisted.
+    private boolean isInvariant(Expr expr) {
+        return loop != null && loop.isPure(expr) && Loop.readsVariable(expr);
+    }
+
+    //optimizes an invariant expression and gives it a hidden local in the loop being optimized.
+    private Expr hoist(Expr expr, Token operator) {
+        Loop current = loop;
+        loop = null;
+        Expr optimized = optimize(expr);
+        loop = current;
+
+        Token name = new Token(Symbol.intern("$" + hidden++), operator.line);
+        Stmt.Var declaration = new Stmt.Var(name, null);
+        declaration.line = operator.line;
+        loop.hidden.add(declaration);
+        return new Expr.Invariant(name, optimized);
+    }
+
+    //optimizes a list of statements, dropping the ones that were optimized away and everything after a return.
+    //a block that declares nothing doesn't need a scope, its statements are merged into the list.
+    private List<Stmt> optimizeAll(List<Stmt> statements) {
+        List<Stmt> optimized = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            Stmt result = statement.accept(this);
+            if (result == null) continue;
+
+            if (result instanceof Stmt.Block && !declares((Stmt.Block)result)) {
+                for (Stmt merged : ((Stmt.Block)result).statements) {
+                    optimized.add(merged);
+                    if (merged instanceof Stmt.Return) return optimized;
+                }
+                continue;
+            }
+
+            optimized.add(result);
+            if (result instanceof Stmt.Return) break;
+        }
+        return optimized;
+    }
+
+    private static boolean declares(Stmt.Block block) {
+        for (Stmt statement : block.statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Function) return true;
+        }
+        return false;
+    }
+
+    //optimizes the body of an if or a while, which has to stay a statement even if it was optimized away.
+    private Stmt optimizeBranch(Stmt stmt) {
+        Stmt result = stmt.accept(this);
+        if (result == null) return line(stmt, new Stmt.Block(new ArrayList<>()));
+        return result;
+    }
+
+    //gives a statement that replaces another the line of the one it replaces.
+    private static <T extends Stmt> T line(Stmt original, T replacement) {
+        replacement.line = original.line;
+        return replacement;
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr.accept(this);
+    }
+}
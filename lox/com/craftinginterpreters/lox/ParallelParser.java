@@ -0,0 +1,116 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//parses a long token list on several threads. the list is cut into chunks just before top-level function
+//declarations, each chunk is parsed on its own with fork-join, and the statements are joined back in order.
+//a top-level "fun" right after a ";" or a "}" that isn't inside any braces or parentheses always starts a new
+//declaration, so the chunks hold whole statements and the result is the same list the parser makes on its own.
+//errors are different: a chunk can't know what the statements around it would have made of a mistake. so the chunks
+//report to a reporter of their own, and if any of them had an error the whole list is parsed again the usual way,
+//reporting to the real reporter, which keeps the errors and their order exactly as they always are.
+class ParallelParser {
+    //chunks smaller than this aren't worth a thread of their own.
+    private static final int MIN_CHUNK_TOKENS = 16 * 1024;
+
+    private ParallelParser() {
+    }
+
+    static List<Stmt> parse(List<Token> tokens, ErrorReporter reporter) {
+        List<Integer> cuts = cuts(tokens);
+        if (cuts.size() > 2) {
+            //shared by every chunk, it only keeps the errors.
+            ErrorReporter chunkErrors = new ErrorReporter();
+            Chunks chunks = new Chunks(tokens, cuts, 0, cuts.size() - 1, chunkErrors);
+            List<Stmt> statements = ForkJoinPool.commonPool().invoke(chunks);
+            if (!chunkErrors.hadError) return statements;
+        }
+
+        return new Parser(tokens, reporter).parse();
+    }
+
+    //where the chunks start and end: the first cut is 0 and the last one is the index of the eof token.
+    private static List<Integer> cuts(List<Token> tokens) {
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+
+        int depth = 0;
+        int last = 0;
+        for (int i = 1; i < tokens.size() - 1; i++) {
+            switch (tokens.get(i - 1).type) {
+                case LEFT_BRACE: case LEFT_PAREN: case LEFT_BRACKET: depth++; break;
+                case RIGHT_BRACE: case RIGHT_PAREN: case RIGHT_BRACKET: depth--; break;
+            }
+
+            if (depth != 0 || tokens.get(i).type != TokenType.FUN || i - last < MIN_CHUNK_TOKENS) continue;
+            TokenType before = tokens.get(i - 1).type;
+            if (before == TokenType.SEMICOLON || before == TokenType.RIGHT_BRACE) {
+                cuts.add(i);
+                last = i;
+            }
+        }
+
+        cuts.add(tokens.size() - 1);
+        return cuts;
+    }
+
+    //parses the chunks between two cuts, splitting the range in half until there's one chunk left.
+    private static class Chunks extends RecursiveTask<List<Stmt>> {
+        //tasks are never serialized, ForkJoinTask is only Serializable for compatibility.
+        private static final long serialVersionUID = 1L;
+
+        private final List<Token> tokens;
+        private final List<Integer> cuts;
+        private final int first;
+        private final int last;
+        private final ErrorReporter reporter;
+
+        Chunks(List<Token> tokens, List<Integer> cuts, int first, int last, ErrorReporter reporter) {
+            this.tokens = tokens;
+            this.cuts = cuts;
+            this.first = first;
+            this.last = last;
+            this.reporter = reporter;
+        }
+
+        @Override
+        protected List<Stmt> compute() {
+            if (last - first == 1) {
+                return new Parser(chunk(cuts.get(first), cuts.get(last)), reporter).parse();
+            }
+
+            int middle = (first + last) / 2;
+            Chunks left = new Chunks(tokens, cuts, first, middle, reporter);
+            left.fork();
+            List<Stmt> right = new Chunks(tokens, cuts, middle, last, reporter).compute();
+            List<Stmt> statements = left.join();
+            statements.addAll(right);
+            return statements;
+        }
+
+        //the tokens of a chunk followed by the eof token, so the parser stops at the end of the chunk.
+        private Iterator<Token> chunk(int start, int end) {
+            Iterator<Token> body = tokens.subList(start, end).iterator();
+            Token eof = tokens.get(tokens.size() - 1);
+            return new Iterator<Token>() {
+                private boolean done = false;
+
+                @Override
+                public boolean hasNext() {
+                    return !done;
+                }
+
+                @Override
+                public Token next() {
+                    if (body.hasNext()) return body.next();
+                    done = true;
+                    return eof;
+                }
+            };
+        }
+    }
+}
@@ -2,15 +2,26 @@ package com.craftinginterpreters.lox;
 
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import static com.craftinginterpreters.lox.TokenType.*;
 public class Parser {
     private static class ParseError extends RuntimeException {}
-    private final List<Token> tokens;
-    private int current = 0;
+    //tokens are pulled from the scanner one at a time as the parser needs them, only the token being looked at
+    //and the one before it are kept.
+    private final Iterator<Token> tokens;
+    private final ErrorReporter reporter;
+    private Token previous;
+    private Token next;
 
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, ErrorReporter reporter) {
+        this(tokens.iterator(), reporter);
+    }
+
+    Parser(Iterator<Token> tokens, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
+        this.next = tokens.next();
     }
 
     //begins parsing an expression.
@@ -23,6 +34,17 @@ public class Parser {
         return statements;
     }
 
+    //parses the next top-level declaration, for callers that take a program one declaration at a time.
+    //a declaration with an error gives back null, the same as it does in the list parse makes.
+    Stmt nextDeclaration() {
+        return declaration();
+    }
+
+    //true once every declaration has been parsed.
+    boolean done() {
+        return isAtEnd();
+    }
+
     //begins recursive descent.
     private Expr expression() {
         return assignment();
@@ -50,7 +72,7 @@ public class Parser {
         }
 
         consume(SEMICOLON, "Expect ':' after variable declaration.");
-        return new Stmt.Var(name, initializer);
+        return line(new Stmt.Var(name, initializer), name);
     }
 
     //calls the function that will begin the recursive descent process and decide which side effects will happen
@@ -61,13 +83,18 @@ public class Parser {
         if (match(PRINT)) return printStatement();
         if (match(RETURN)) return returnStatement();
         if (match(WHILE)) return whileStatement();
-        if (match(LEFT_BRACE)) return new Stmt.Block(block());
+        if (match(LEFT_BRACE)) {
+            Token brace = previous();
+            return line(new Stmt.Block(block()), brace);
+        }
 
         return expressionStatement();
     }
 
     //creates a for statement by building a while statement.
+    //every statement it makes is on the line of the for keyword.
     private Stmt forStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after 'for'.");
 
         Stmt initializer;
@@ -95,14 +122,14 @@ public class Parser {
         Stmt body = statement();
 
         if (increment != null) {
-            body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
+            body = line(new Stmt.Block(Arrays.asList(body, line(new Stmt.Expression(increment), keyword))), keyword);
         }
 
         if (condition == null) condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
+        body = line(new Stmt.While(condition, body), keyword);
 
         if (initializer != null) {
-            body = new Stmt.Block(Arrays.asList(initializer, body));
+            body = line(new Stmt.Block(Arrays.asList(initializer, body)), keyword);
         }
 
         return body;
@@ -110,6 +137,7 @@ public class Parser {
 
     //creates an if statement with a thenBranch and an optional elseBranch.
     private Stmt ifStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after 'if'.");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expect ')' after if condition.");
@@ -120,14 +148,15 @@ public class Parser {
             elseBranch = statement();
         }
 
-        return new Stmt.If(condition, thenBranch, elseBranch);
+        return line(new Stmt.If(condition, thenBranch, elseBranch), keyword);
     }
 
     //evaluates the expression then prints it.
     private Stmt printStatement() {
+        Token keyword = previous();
         Expr value = expression();
         consume(SEMICOLON, "Expect ';' after value.");
-        return new Stmt.Print(value);
+        return line(new Stmt.Print(value), keyword);
     }
 
     //creates a return statement.
@@ -139,14 +168,15 @@ public class Parser {
         }
 
         consume(SEMICOLON, "Expect ';' after return value.");
-        return new Stmt.Return(keyword, value);
+        return line(new Stmt.Return(keyword, value), keyword);
     }
 
     //evaluates an expression.
     private Stmt expressionStatement() {
+        Token start = peek();
         Expr expr = expression();
         consume(SEMICOLON, "Expect ';' after value.");
-        return new Stmt.Expression(expr);
+        return line(new Stmt.Expression(expr), start);
     }
 
     //creates a function with a name, parameters, and a body;
@@ -165,17 +195,24 @@ public class Parser {
         consume(RIGHT_PAREN, "Expect ')' after parameters.");
         consume(LEFT_BRACE, "Expect '{' before" + kind + " body.");
         List<Stmt> body = block();
-        return new Stmt.Function(name, parameters, body);
+        return line(new Stmt.Function(name, parameters, body), name);
     }
 
     //creates a while statement with a condition and a body.
     private Stmt whileStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after 'while'.");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expect ')' after condition.");
         Stmt body = statement();
 
-        return new Stmt.While(condition, body);
+        return line(new Stmt.While(condition, body), keyword);
+    }
+
+    //records the line a statement starts on.
+    private <T extends Stmt> T line(T stmt, Token start) {
+        stmt.line = start.line;
+        return stmt;
     }
 
     //creates a block of code by creating a list of statements while looking for a closing brace.
@@ -201,6 +238,10 @@ public class Parser {
                 Token name = ((Expr.Variable)expr).name;
                 return new Expr.Assign(name, value);
             }
+            else if (expr instanceof Expr.Index) {
+                Expr.Index index = (Expr.Index)expr;
+                return new Expr.SetIndex(index.object, index.bracket, index.index, value);
+            }
 
             error(equals, "Invalid assignment target.");
         }
@@ -309,7 +350,7 @@ public class Parser {
         return call();
     }
 
-    //calls primary to create expr, if left parent is found, finishes call.
+    //calls primary to create expr, if left parent is found, finishes call, if left bracket is found, indexes expr.
     private Expr call() {
         Expr expr = primary();
 
@@ -317,6 +358,12 @@ public class Parser {
             if (match(LEFT_PAREN)) {
                 expr = finishCall(expr);
             }
+            else if (match(LEFT_BRACKET)) {
+                Token bracket = previous();
+                Expr index = expression();
+                consume(RIGHT_BRACKET, "Expect ']' after index.");
+                expr = new Expr.Index(expr, bracket, index);
+            }
             else {
                 break;
             }
@@ -345,9 +392,31 @@ public class Parser {
             return new Expr.Grouping(expr);
         }
 
+        if (match(LEFT_BRACKET)) {
+            return listLiteral();
+        }
+
         throw error(peek(), "Expect expression.");
     }
 
+    //creates a list literal with 0 or more elements, the vm builds one with a count that fits in two bytes.
+    private Expr listLiteral() {
+        Token bracket = previous();
+        List<Expr> elements = new ArrayList<>();
+        if (!check(RIGHT_BRACKET)) {
+            do {
+                if (elements.size() >= 65535) {
+                    error(peek(), "Can't have more than 65535 elements in a list literal.");
+                }
+                elements.add(expression());
+            } while (match(COMMA));
+        }
+
+        consume(RIGHT_BRACKET, "Expect ']' after list elements.");
+
+        return new Expr.ListLiteral(bracket, elements);
+    }
+
     //creates a call expression with 0 or more arguments.
     private Expr finishCall(Expr callee) {
         List<Expr> arguments = new ArrayList<>();
@@ -391,7 +460,10 @@ public class Parser {
 
     //moves to the next token and returns the previous.
     private Token advance() {
-        if (!isAtEnd()) current++;
+        if (!isAtEnd()) {
+            previous = next;
+            next = tokens.next();
+        }
         return previous();
     }
 
@@ -402,17 +474,17 @@ public class Parser {
 
     //checks the next token.
     private Token peek() {
-        return tokens.get(current);
+        return next;
     }
 
     //returns the previous token.
     private Token previous() {
-        return tokens.get(current - 1);
+        return previous;
     }
 
     //creates an error.
     private ParseError error(Token token, String message) {
-        Lox.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
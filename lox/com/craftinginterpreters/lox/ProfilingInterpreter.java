@@ -0,0 +1,197 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//the tree-walk interpreter with a sampling profiler, used for "--profile".
+//while the program runs, the interpreter keeps a stack of the lox functions that are running and the line each one
+//is at. the stack lives in plain arrays that are written without any locking, so keeping it up to date costs a few
+//stores per statement and call. only the depth is volatile: a frame is filled in before the depth that includes it
+//is written, so a sampler that reads the depth first sees every frame up to it. a sampler thread copies the stack
+//every interval (lox.profile.interval milliseconds, 1 by default) and counts how many times it saw each one.
+//a sample can be taken in the middle of a call or a return and be slightly off, which doesn't matter for a
+//statistical profile.
+//when the program finishes, a flat profile is printed to stderr and every stack that was seen is written to a file
+//in the collapsed format flame graph tools read ("script:20;fib:5 137").
+class ProfilingInterpreter extends Interpreter {
+    //how many lines of the flat profile are printed.
+    private static final int FLAT_PROFILE_LENGTH = 20;
+
+    private final Path stacksFile;
+    private final long interval = Math.max(1, Integer.getInteger("lox.profile.interval", 1));
+
+    //the running functions and the line each one is at. frame 0 is the top level of the script, it has no function.
+    //the arrays are only replaced before a depth write, so reading depth publishes them too.
+    private LoxFunction[] functions = new LoxFunction[64];
+    private int[] lines = new int[64];
+    private volatile int depth = 0;
+
+    //how many times each collapsed stack was sampled. only the sampler thread touches it until it has stopped.
+    private final Map<String, Integer> stacks = new HashMap<>();
+    private int samples = 0;
+
+    //writes the collapsed stacks to stacksFile.
+    ProfilingInterpreter(ErrorReporter reporter, LoxOutput output, Path stacksFile) {
+        super(reporter, output);
+        this.stacksFile = stacksFile;
+    }
+
+    //runs the program with the sampler running, then reports what it saw.
+    @Override
+    void interpret(List<Stmt> statements) {
+        Sampler sampler = new Sampler();
+        sampler.start();
+        try {
+            super.interpret(statements);
+        }
+        finally {
+            sampler.finish();
+            //what the program printed comes before the profile.
+            output.flush();
+            report();
+        }
+    }
+
+    //records the line of each statement as it starts, in the frame of the function running it.
+    @Override
+    Completion execute(Stmt stmt) {
+        lines[depth] = stmt.line;
+        return super.execute(stmt);
+    }
+
+    @Override
+    void enter(LoxFunction function) {
+        if (depth + 1 == functions.length) {
+            //the sampler might still be reading the old arrays, so they are copied instead of changed.
+            LoxFunction[] grownFunctions = new LoxFunction[functions.length * 2];
+            int[] grownLines = new int[lines.length * 2];
+            System.arraycopy(functions, 0, grownFunctions, 0, functions.length);
+            System.arraycopy(lines, 0, grownLines, 0, lines.length);
+            functions = grownFunctions;
+            lines = grownLines;
+        }
+
+        //the frame is filled in before it's pushed, so the sampler never sees an empty one.
+        //until the body's first statement runs, the time goes to the line the function was declared on.
+        int top = depth + 1;
+        functions[top] = function;
+        lines[top] = function.line();
+        depth = top;
+    }
+
+    @Override
+    void exit() {
+        depth--;
+    }
+
+    //takes one sample of the running stack and counts it. the depth is read before the arrays, which is what makes
+    //the frames under it visible. frames can still be replaced while they're copied, a slot that is somehow empty
+    //drops the sample rather than recording a stack that never ran.
+    private void sample() {
+        int top = depth;
+        LoxFunction[] functions = this.functions;
+        int[] lines = this.lines;
+        top = Math.min(top, Math.min(functions.length, lines.length) - 1);
+
+        StringBuilder stack = new StringBuilder();
+        for (int i = 0; i <= top; i++) {
+            LoxFunction function = functions[i];
+            if (i > 0 && function == null) return;
+
+            if (i > 0) stack.append(';');
+            stack.append(i == 0 ? "script" : function.name()).append(':').append(lines[i]);
+        }
+
+        stacks.merge(stack.toString(), 1, Integer::sum);
+        samples++;
+    }
+
+    //prints the flat profile and writes the collapsed stacks. a frame's self count is how many samples it was
+    //the top of the stack in, its total count is how many samples it was anywhere in the stack.
+    private void report() {
+        Map<String, Integer> self = new HashMap<>();
+        Map<String, Integer> total = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+            String[] frames = entry.getKey().split(";");
+            int count = entry.getValue();
+
+            self.merge(frames[frames.length - 1], count, Integer::sum);
+            Set<String> seen = new HashSet<>();
+            for (String frame : frames) {
+                //a recursive function is counted once per sample, not once per frame.
+                if (seen.add(frame)) total.merge(frame, count, Integer::sum);
+            }
+        }
+
+        List<String> locations = new ArrayList<>(total.keySet());
+        locations.sort((a, b) -> {
+            int bySelf = Integer.compare(self.getOrDefault(b, 0), self.getOrDefault(a, 0));
+            if (bySelf != 0) return bySelf;
+            return Integer.compare(total.get(b), total.get(a));
+        });
+
+        System.err.println("Profile: " + samples + " samples, one every " + interval + " ms.");
+        System.err.println("  self%  total%  location");
+        for (String location : locations.subList(0, Math.min(FLAT_PROFILE_LENGTH, locations.size()))) {
+            System.err.printf("%6.1f%% %6.1f%%  %s%n",
+                    percent(self.getOrDefault(location, 0)), percent(total.get(location)), location);
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(stacksFile))) {
+            for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+                writer.println(entry.getKey() + " " + entry.getValue());
+            }
+            System.err.println("Stacks written to " + stacksFile + ".");
+        }
+        catch (IOException error) {
+            System.err.println("Could not write " + stacksFile + ": " + error.getMessage());
+        }
+    }
+
+    private double percent(int count) {
+        return samples == 0 ? 0 : 100.0 * count / samples;
+    }
+
+    //the thread that takes the samples. it's a daemon so it never keeps the jvm alive on its own.
+    private class Sampler extends Thread {
+        private volatile boolean running = true;
+
+        Sampler() {
+            super("lox-profiler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    Thread.sleep(interval);
+                }
+                catch (InterruptedException error) {
+                    return;
+                }
+                sample();
+            }
+        }
+
+        //stops sampling and waits for the last sample to be counted.
+        void finish() {
+            running = false;
+            interrupt();
+            try {
+                join();
+            }
+            catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
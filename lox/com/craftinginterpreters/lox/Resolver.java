@@ -0,0 +1,421 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//semantic analysis pass that runs between the parser and the interpreter.
+//walks the syntax tree once and works out, for every local variable reference, how many scopes out the variable
+//was declared (depth) and which slot of that scope's environment it lives in (slot).
+//references that can't be found in any local scope are left to the global environment (depth -1).
+//function bodies always get an environment of their own, but most blocks don't: a block that declares no functions
+//(anywhere inside it) can't have its variables captured, so they are given spare slots of the environment around
+//it. that way a loop body doesn't make a new environment every iteration. blocks that declare variables and
+//declare functions keep their own environment, so each closure captures its own variables.
+class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final ErrorReporter reporter;
+    private final List<Scope> scopes = new ArrayList<>();
+    private FunctionType currentFunction = FunctionType.NONE;
+
+    //set when a call is resolved, an operator looks at it to tell if its operands call anything.
+    private boolean calls = false;
+
+    //the variables declared in one block or function body, and the environment they live in.
+    private static class Scope {
+        final Map<Symbol, Local> locals = new HashMap<>();
+        final Frame frame;
+        final int start;
+
+        Scope(Frame frame) {
+            this.frame = frame;
+            this.start = frame.next;
+        }
+    }
+
+    //an environment that will exist at runtime. slots are handed out like a stack, a block that gave its locals
+    //slots in an enclosing environment gives them back when it ends, so sibling blocks share them.
+    private static class Frame {
+        final int level;
+        int next = 0;
+        int size = 0;
+
+        Frame(int level) {
+            this.level = level;
+        }
+    }
+
+    //a local variable, the slot it was given, and whether its initializer has finished resolving yet.
+    private static class Local {
+        final int slot;
+        boolean defined = false;
+
+        Local(int slot) {
+            this.slot = slot;
+        }
+    }
+
+    private enum FunctionType {
+        NONE,
+        FUNCTION
+    }
+
+    Resolver(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    //resolves a list of statements one by one.
+    void resolve(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            resolve(statement);
+        }
+    }
+
+    //resolves a block in its own scope, then records how many slots its environment needs.
+    //a block that borrows slots from the environment around it needs no environment, so it gets 0 slots.
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        boolean ownEnvironment = scopes.isEmpty() || (declares(stmt.statements) && declaresFunction(stmt.statements));
+        Scope scope = beginScope(ownEnvironment);
+        resolve(stmt.statements);
+        stmt.slots = ownEnvironment ? scope.frame.size : 0;
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    //declares and defines the function name before resolving the body, so that the function can call itself.
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        stmt.slot = declare(stmt.name);
+        define(stmt.name);
+
+        resolveFunction(stmt, FunctionType.FUNCTION);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.thenBranch);
+        if (stmt.elseBranch != null) resolve(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (currentFunction == FunctionType.NONE) {
+            reporter.error(stmt.keyword, "Can't return from top-level code.");
+        }
+
+        if (stmt.value != null) {
+            resolve(stmt.value);
+        }
+
+        //a call that is the whole return value is in tail position, nothing is left to do in this function
+        //once it returns, so the interpreter can run it without nesting another java call.
+        stmt.tailCall = stmt.value instanceof Expr.Call;
+        return null;
+    }
+
+    //declares the variable before resolving the initializer and defines it after,
+    //so that a local variable can't be read in its own initializer.
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        stmt.slot = declare(stmt.name);
+        if (stmt.initializer != null) {
+            resolve(stmt.initializer);
+        }
+        define(stmt.name);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        resolve(expr.value);
+        expr.depth = resolveDepth(expr.name);
+        if (expr.depth != -1) expr.slot = resolveSlot(expr.name);
+        return null;
+    }
+
+    //also works out if the expression can take the interpreter's unboxed path.
+    //- * and / always produce a number or fail, + only does if one side of it is already known to be a number,
+    //and comparisons always compare numbers or fail.
+    //operands that call something are left to the boxed path. the unboxed path runs in a few more java frames,
+    //which a recursive call made from inside it would add to every level of the recursion.
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        boolean enclosing = calls;
+        calls = false;
+        resolve(expr.left);
+        resolve(expr.right);
+        boolean operandsCall = calls;
+        calls = enclosing || operandsCall;
+        if (operandsCall) return null;
+
+        switch (expr.operator.type) {
+            case MINUS:
+            case SLASH:
+            case STAR:
+                expr.arithmetic = true;
+                break;
+            case PLUS:
+                expr.arithmetic = Interpreter.isArithmetic(expr.left) || Interpreter.isArithmetic(expr.right);
+                break;
+        }
+        switch (expr.operator.type) {
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                expr.unboxed = true;
+                break;
+            default:
+                expr.unboxed = expr.arithmetic;
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        resolve(expr.callee);
+
+        for (Expr argument : expr.arguments) {
+            resolve(argument);
+        }
+        calls = true;
+
+        //a call to a global named after a native over numbers is bound to it. the program can still define a global
+        //of its own with that name, so the interpreter checks the global holds the native before using the binding.
+        if (expr.callee instanceof Expr.Variable && ((Expr.Variable)expr.callee).depth == -1) {
+            expr.intrinsic = NativeRegistry.standard().intrinsic(((Expr.Variable)expr.callee).name.symbol,
+                    expr.arguments.size());
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
+    //the hidden local an invariant expression is kept in is declared by the optimizer, like any other local.
+    @Override
+    public Void visitInvariantExpr(Expr.Invariant expr) {
+        resolve(expr.expression);
+        expr.depth = resolveDepth(expr.name);
+        expr.slot = resolveSlot(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitListLiteralExpr(Expr.ListLiteral expr) {
+        for (Expr element : expr.elements) {
+            resolve(element);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetIndexExpr(Expr.SetIndex expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        resolve(expr.value);
+        return null;
+    }
+
+    //negation takes the unboxed path too, unless its operand calls something.
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        boolean enclosing = calls;
+        calls = false;
+        resolve(expr.right);
+        boolean operandCalls = calls;
+        calls = enclosing || operandCalls;
+
+        expr.arithmetic = expr.operator.type == TokenType.MINUS && !operandCalls;
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        if (!scopes.isEmpty()) {
+            Local local = currentScope().locals.get(expr.name.symbol);
+            if (local != null && !local.defined) {
+                reporter.error(expr.name, "Can't read local variable in its own initializer.");
+            }
+        }
+
+        expr.depth = resolveDepth(expr.name);
+        if (expr.depth != -1) expr.slot = resolveSlot(expr.name);
+        return null;
+    }
+
+    private void resolve(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void resolve(Expr expr) {
+        expr.accept(this);
+    }
+
+    //resolves a function body in a new scope that starts with the parameters,
+    //then records how many slots a call's environment needs.
+    private void resolveFunction(Stmt.Function function, FunctionType type) {
+        FunctionType enclosingFunction = currentFunction;
+        currentFunction = type;
+
+        Scope scope = beginScope(true);
+        for (Token param : function.params) {
+            declare(param);
+            define(param);
+        }
+        resolve(function.body);
+        function.slots = scope.frame.size;
+        endScope();
+
+        currentFunction = enclosingFunction;
+    }
+
+    //checks if any of the statements is a declaration. a block without any has nothing to keep in an environment.
+    private boolean declares(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Var || statement instanceof Stmt.Function) return true;
+        }
+        return false;
+    }
+
+    //checks if any of the statements declare a function, including inside nested blocks, ifs and loops.
+    //function bodies aren't looked into, the function declaration itself is enough.
+    private boolean declaresFunction(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (declaresFunction(statement)) return true;
+        }
+        return false;
+    }
+
+    private boolean declaresFunction(Stmt stmt) {
+        if (stmt instanceof Stmt.Function) return true;
+        if (stmt instanceof Stmt.Block) return declaresFunction(((Stmt.Block)stmt).statements);
+        if (stmt instanceof Stmt.If) {
+            Stmt.If ifStmt = (Stmt.If)stmt;
+            return declaresFunction(ifStmt.thenBranch) ||
+                    (ifStmt.elseBranch != null && declaresFunction(ifStmt.elseBranch));
+        }
+        if (stmt instanceof Stmt.While) return declaresFunction(((Stmt.While)stmt).body);
+        return false;
+    }
+
+    //starts a scope, either with an environment of its own or borrowing slots from the one it's in.
+    private Scope beginScope(boolean ownEnvironment) {
+        Frame frame;
+        if (ownEnvironment) {
+            frame = new Frame(scopes.isEmpty() ? 0 : currentScope().frame.level + 1);
+        }
+        else {
+            frame = currentScope().frame;
+        }
+
+        Scope scope = new Scope(frame);
+        scopes.add(scope);
+        return scope;
+    }
+
+    //ends the innermost scope, giving back any slots it borrowed.
+    private void endScope() {
+        Scope scope = scopes.remove(scopes.size() - 1);
+        scope.frame.next = scope.start;
+    }
+
+    private Scope currentScope() {
+        return scopes.get(scopes.size() - 1);
+    }
+
+    //adds a variable to the innermost scope and returns the next free slot of its environment, which it is given.
+    //globals are not tracked and get -1.
+    private int declare(Token name) {
+        if (scopes.isEmpty()) return -1;
+
+        Scope scope = currentScope();
+        if (scope.locals.containsKey(name.symbol)) {
+            reporter.error(name, "Already a variable with this name in this scope.");
+            return -1;
+        }
+
+        Frame frame = scope.frame;
+        int slot = frame.next++;
+        frame.size = Math.max(frame.size, frame.next);
+        scope.locals.put(name.symbol, new Local(slot));
+        return slot;
+    }
+
+    //marks a variable as ready to be used.
+    private void define(Token name) {
+        if (scopes.isEmpty()) return;
+        Local local = currentScope().locals.get(name.symbol);
+        if (local != null) local.defined = true;
+    }
+
+    //looks for a variable from the innermost scope outwards and returns how many environments out it lives,
+    //or -1 if it must be a global.
+    private int resolveDepth(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Scope scope = scopes.get(i);
+            if (scope.locals.containsKey(name.symbol)) {
+                return currentScope().frame.level - scope.frame.level;
+            }
+        }
+
+        return -1;
+    }
+
+    //returns the slot the innermost declaration of a local variable was given.
+    private int resolveSlot(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Local local = scopes.get(i).locals.get(name.symbol);
+            if (local != null) return local.slot;
+        }
+
+        throw new IllegalStateException("Unresolved local " + name.lexeme() + ".");
+    }
+}
@@ -0,0 +1,102 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+//a lox string made by joining two strings with +, without copying either of them. a loop doing s = s + x builds a
+//chain of ropes in linear time, where joining java strings would copy everything built so far on every turn.
+//the characters are only put together the first time something needs them, printing or comparing the string,
+//and the string that makes is kept. short strings are still joined straight away, a rope isn't worth it for them.
+//lox strings are either java strings or ropes, everything that looks at a string's characters goes through
+//toString, so a rope behaves exactly like the string it stands for.
+//ropes never change once made, the flattened string is only a cache, so they can be shared between tasks.
+final class Rope implements CharSequence {
+    //joins that make a string shorter than this copy the characters instead of making a rope.
+    private static final int MIN_LENGTH = 64;
+
+    //each part is a java string or another rope.
+    private final CharSequence left;
+    private final CharSequence right;
+    private final int length;
+
+    //the characters, once something has asked for them.
+    private String flat;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length() + right.length();
+    }
+
+    static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    //joins two lox strings.
+    static CharSequence concat(Object a, Object b) {
+        CharSequence left = parts(a);
+        CharSequence right = parts(b);
+        if (left.length() + right.length() < MIN_LENGTH) return left.toString() + right;
+        if (left.length() == 0) return right;
+        if (right.length() == 0) return left;
+
+        return new Rope(left, right);
+    }
+
+    //a string, or a rope that hasn't been flattened yet. a rope that has been is joined by its flat string, so the
+    //ropes made from it don't go through its parts again.
+    private static CharSequence parts(Object value) {
+        if (value instanceof Rope && ((Rope)value).flat != null) return ((Rope)value).flat;
+        return (CharSequence)value;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String string = flat;
+        if (string == null) {
+            string = flatten();
+            flat = string;
+        }
+        return string;
+    }
+
+    //copies every part into one array, from the end backwards. ropes built by a loop lean to the left, so walking
+    //right to left keeps the stack of parts still to copy down to a couple of entries however long the chain is.
+    private String flatten() {
+        char[] characters = new char[length];
+        int end = length;
+
+        Deque<CharSequence> parts = new ArrayDeque<>();
+        parts.push(this);
+        while (!parts.isEmpty()) {
+            CharSequence part = parts.pop();
+            if (part instanceof Rope && ((Rope)part).flat == null) {
+                Rope rope = (Rope)part;
+                parts.push(rope.left);
+                parts.push(rope.right);
+                continue;
+            }
+
+            String string = part.toString();
+            end -= string.length();
+            string.getChars(0, string.length(), characters, end);
+        }
+
+        return new String(characters);
+    }
+}
@@ -1,97 +1,164 @@
 package com.craftinginterpreters.lox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import static com.craftinginterpreters.lox.TokenType.*;
 
-//lexer. scans through the source code splitting it up into lexical tokens, in the end, returns the list of tokens.
+//lexer. scans through the source code splitting it up into lexical tokens, handing them out one at a time as the
+//parser asks for them, so the whole token list never has to exist at once.
 //aka. lexical analysis, lexing or tokenization
-class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private int start = 0;
-    private int current = 0;
-    private int line = 1;
+class Scanner implements Iterator<Token> {
+    private final CharSequence source;
+    private final ErrorReporter reporter;
+    private int start;
+    private int current;
+    private int line;
+    //the line start is on, a token that runs over several lines is given the line it ends on.
+    private int startLine;
+    private boolean done = false;
 
-    private static final Map<String, TokenType> keywords;
+    private static final Map<TokenType, String> lexemes;
 
-    //connects keyword types to a string which can be searched for in the source code.
+    //the text of every token type that is always spelled the same way, so those tokens don't copy their
+    //lexeme out of the source.
     static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("null", NULL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
-    }
-
-    Scanner(String source) {
+        lexemes = new EnumMap<>(TokenType.class);
+        lexemes.put(LEFT_PAREN, "(");
+        lexemes.put(RIGHT_PAREN, ")");
+        lexemes.put(LEFT_BRACE, "{");
+        lexemes.put(RIGHT_BRACE, "}");
+        lexemes.put(LEFT_BRACKET, "[");
+        lexemes.put(RIGHT_BRACKET, "]");
+        lexemes.put(COMMA, ",");
+        lexemes.put(DOT, ".");
+        lexemes.put(MINUS, "-");
+        lexemes.put(PLUS, "+");
+        lexemes.put(SEMICOLON, ";");
+        lexemes.put(SLASH, "/");
+        lexemes.put(STAR, "*");
+        lexemes.put(BANG, "!");
+        lexemes.put(BANG_EQUAL, "!=");
+        lexemes.put(EQUAL, "=");
+        lexemes.put(EQUAL_EQUAL, "==");
+        lexemes.put(GREATER, ">");
+        lexemes.put(GREATER_EQUAL, ">+");
+        lexemes.put(LESS, "<");
+        lexemes.put(LESS_EQUAL, "<=");
+        lexemes.put(AND, "and");
+        lexemes.put(CLASS, "class");
+        lexemes.put(ELSE, "else");
+        lexemes.put(FALSE, "false");
+        lexemes.put(FOR, "for");
+        lexemes.put(FUN, "fun");
+        lexemes.put(IF, "if");
+        lexemes.put(NULL, "null");
+        lexemes.put(OR, "or");
+        lexemes.put(PRINT, "print");
+        lexemes.put(RETURN, "return");
+        lexemes.put(SUPER, "super");
+        lexemes.put(THIS, "this");
+        lexemes.put(TRUE, "true");
+        lexemes.put(VAR, "var");
+        lexemes.put(WHILE, "while");
+        lexemes.put(EOF, "");
+    }
+
+    Scanner(CharSequence source, ErrorReporter reporter) {
+        this(source, 0, 1, reporter);
+    }
+
+    //a scanner that starts part way through a source, at the start of a token on the given line.
+    Scanner(CharSequence source, int offset, int line, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
+        this.start = offset;
+        this.current = offset;
+        this.line = line;
     }
 
-    //goes through the source code string scanning tokens one by one.
+    //goes through the whole source code scanning tokens one by one, and returns them all as a list.
     List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        while (hasNext()) {
+            tokens.add(next());
+        }
+        return tokens;
+    }
+
+    //true until the eof token has been handed out.
+    @Override
+    public boolean hasNext() {
+        return !done;
+    }
+
+    //scans the next token, skipping whitespace, comments and characters that only produce an error.
+    //the last token is always eof.
+    @Override
+    public Token next() {
+        if (done) throw new NoSuchElementException();
+
         while (!isAtEnd()) {
             start = current;
-            scanToken();
+            startLine = line;
+            Token token = scanToken();
+            if (token != null) return token;
         }
 
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        start = current;
+        startLine = line;
+        done = true;
+        return new Token(EOF, "", null, line);
+    }
+
+    //the offset in the source the token next last returned starts at. eof starts at the end of the source.
+    int start() {
+        return start;
+    }
+
+    //the line the token next last returned starts on.
+    int startLine() {
+        return startLine;
     }
 
-    //uses switch to check for lexemes in the source code and creates a token for them if found.
-    private void scanToken() {
+    //uses switch to check for lexemes in the source code and creates a token for them if found,
+    //returns null when there is no token there.
+    private Token scanToken() {
         char c = advance();
         switch (c) {
-            case '(': addToken(LEFT_PAREN); break;
-            case ')': addToken(RIGHT_PAREN); break;
-            case '{': addToken(LEFT_BRACE); break;
-            case '}': addToken(RIGHT_BRACE); break;
-            case ',': addToken(COMMA); break;
+            case '(': return token(LEFT_PAREN);
+            case ')': return token(RIGHT_PAREN);
+            case '{': return token(LEFT_BRACE);
+            case '}': return token(RIGHT_BRACE);
+            case '[': return token(LEFT_BRACKET);
+            case ']': return token(RIGHT_BRACKET);
+            case ',': return token(COMMA);
             case '.':
                 if (isDigit(peek())) {
-                    number(true);
-                }
-                else {
-                    addToken(DOT);
+                    return number(true);
                 }
-                break;
-            case '-': addToken(MINUS); break;
-            case '+': addToken(PLUS); break;
-            case ';': addToken(SEMICOLON); break;
-            case '*': addToken(STAR); break;
+                return token(DOT);
+            case '-': return token(MINUS);
+            case '+': return token(PLUS);
+            case ';': return token(SEMICOLON);
+            case '*': return token(STAR);
             case '!':
-                addToken(match('=') ? BANG_EQUAL : BANG);
-                break;
+                return token(match('=') ? BANG_EQUAL : BANG);
             case '=':
-                addToken(match('=') ? EQUAL_EQUAL : EQUAL);
-                break;
+                return token(match('=') ? EQUAL_EQUAL : EQUAL);
             case '<':
-                addToken(match('=') ? LESS_EQUAL : LESS);
-                break;
+                return token(match('=') ? LESS_EQUAL : LESS);
             case '>':
-                addToken(match('+') ? GREATER_EQUAL : GREATER);
-                break;
+                return token(match('+') ? GREATER_EQUAL : GREATER);
             case '/':
                 if (match('/')) {
                     while (peek() != '\n' && !isAtEnd()) advance();
                 }
                 else {
-                    addToken(SLASH);
+                    return token(SLASH);
                 }
                 break;
             case ' ':
@@ -101,39 +168,90 @@ class Scanner {
             case '\n':
                 line++;
                 break;
-            case '"': string(); break;
+            case '"': return string();
             default:
                 if (isDigit(c)) {
-                    number(false);
+                    return number(false);
                 }
                 else if (isAlpha(c)) {
-                    identifier();
+                    return identifier();
                 }
                 else {
-                    Lox.error(line, "Unexpected character.");
+                    reporter.error(line, "Unexpected character.");
                 }
                 break;
         }
+
+        return null;
     }
 
-    //keeps checking the next character to build an identifier literal, or to detect and add keywords to token list.
-    private void identifier() {
+    //keeps checking the next character to build an identifier, or to detect keywords.
+    //identifiers are interned, so only the first occurrence of a name allocates anything.
+    private Token identifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+        TokenType type = keyword();
+        if (type == IDENTIFIER) {
+            return new Token(Symbol.intern(source, start, current), line);
+        }
+        return token(type);
+    }
+
+    //works out if the identifier just scanned is a keyword by looking at its characters in place,
+    //so identifiers aren't copied out of the source just to look them up.
+    private TokenType keyword() {
+        switch (source.charAt(start)) {
+            case 'a': return rest(1, "nd", AND);
+            case 'c': return rest(1, "lass", CLASS);
+            case 'e': return rest(1, "lse", ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a': return rest(2, "lse", FALSE);
+                        case 'o': return rest(2, "r", FOR);
+                        case 'u': return rest(2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i': return rest(1, "f", IF);
+            case 'n': return rest(1, "ull", NULL);
+            case 'o': return rest(1, "r", OR);
+            case 'p': return rest(1, "rint", PRINT);
+            case 'r': return rest(1, "eturn", RETURN);
+            case 's': return rest(1, "uper", SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h': return rest(2, "is", THIS);
+                        case 'r': return rest(2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v': return rest(1, "ar", VAR);
+            case 'w': return rest(1, "hile", WHILE);
+        }
+
+        return IDENTIFIER;
+    }
+
+    //checks if the identifier continues with exactly the given characters after its first few.
+    private TokenType rest(int offset, String rest, TokenType type) {
+        if (current - start != offset + rest.length()) return IDENTIFIER;
+
+        for (int i = 0; i < rest.length(); i++) {
+            if (source.charAt(start + offset + i) != rest.charAt(i)) return IDENTIFIER;
+        }
+        return type;
     }
 
     //keeps checking the next character to build a number literal. if allDecimals is true (number starts with a dot),
     //then no dots are allowed in the number.
-    private void number(boolean allDecimals) {
+    private Token number(boolean allDecimals) {
         while(isDigit(peek())) advance();
 
         if (peek() == '.' && isDigit(peekNext())) {
             if (allDecimals == true) {
-                Lox.error(line, "Multiple dots in number.");
+                reporter.error(line, "Multiple dots in number.");
             }
             else {
                 advance();
@@ -141,26 +259,27 @@ class Scanner {
             }
         }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        String text = source.subSequence(start, current).toString();
+        return new Token(NUMBER, text, Numbers.box(Double.parseDouble(text)), line);
     }
 
     //grabs all the characters for a string, excluding the quotation marks,
-    //then adds a string token to the token list.
-    private void string() {
+    //then makes a string token.
+    private Token string() {
         while(peek() != '"' && !isAtEnd()) {
             if (peek() == '\n') line++;
             advance();
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
-            return;
+            reporter.error(line, "Unterminated string.");
+            return null;
         }
 
         advance();
 
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        String value = source.subSequence(start + 1, current - 1).toString();
+        return new Token(STRING, null, value, line);
     }
 
     //checks if the next character is as expected for dual character lexemes.
@@ -213,14 +332,8 @@ class Scanner {
         return source.charAt(current++);
     }
 
-    //adds literal to token then calls add token.
-    private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    //grabs the text of the current lexeme, then adds the token to the list of tokens with a line number.
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    //makes a token of a type that is always spelled the same way.
+    private Token token(TokenType type) {
+        return new Token(type, lexemes.get(type), null, line);
     }
 }
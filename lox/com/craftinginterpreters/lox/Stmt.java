@@ -39,6 +39,9 @@ abstract class Stmt {
         final Token name;
         final List<Token> params;
         final List<Stmt> body;
+
+        int slots;
+        int slot;
     }
     static class If extends Stmt {
         If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
@@ -67,6 +70,8 @@ abstract class Stmt {
         }
 
         final List<Stmt> statements;
+
+        int slots;
     }
     static class Print extends Stmt {
         Print(Expr expression) {
@@ -93,6 +98,8 @@ abstract class Stmt {
 
         final Token keyword;
         final Expr value;
+
+        boolean tailCall;
     }
     static class While extends Stmt {
         While(Expr condition, Stmt body) {
@@ -121,7 +128,11 @@ abstract class Stmt {
 
         final Token name;
         final Expr initializer;
+
+        int slot;
     }
 
     abstract <R> R accept(Visitor<R> visitor);
+
+    int line;
 }
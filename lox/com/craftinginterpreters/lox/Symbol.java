@@ -0,0 +1,151 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//an interned identifier. there is only ever one symbol for each name, so symbols are compared by identity,
+//and the hash is worked out once when the symbol is made instead of on every lookup.
+//the scanner interns identifiers straight from the source, a name that was seen before costs no allocation.
+//the table is shared by every scanner in the process, so it's split into stripes by hash. finding a symbol that
+//exists takes no lock, making one locks only its stripe. the table only holds symbols weakly: a name no token,
+//tree or environment refers to any more is dropped, so a long running embedder doesn't keep every identifier it
+//ever scanned. a symbol nothing refers to can't be compared with anything, so making a new one for the name later
+//never breaks identity.
+final class Symbol {
+    private static final int STRIPE_BITS = 5;
+    private static final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    static {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    final String name;
+    private final int hash;
+
+    private Symbol(String name, int hash) {
+        this.name = name;
+        this.hash = hash;
+    }
+
+    static Symbol intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    //returns the symbol for the characters between start and end, making it if it doesn't exist yet.
+    static Symbol intern(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int spread = hash ^ (hash >>> 16);
+        Stripe stripe = stripes[spread & (stripes.length - 1)];
+        Symbol symbol = stripe.find(spread >>> STRIPE_BITS, hash, source, start, end);
+        if (symbol != null) return symbol;
+        return stripe.add(spread >>> STRIPE_BITS, hash, source, start, end);
+    }
+
+    private static boolean matches(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) return false;
+
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    //a weak reference to a symbol, chained to the other entries of its bucket. entries never change once they're
+    //made, so a reader can walk a chain while a writer puts a new entry in front of it.
+    private static final class Entry extends WeakReference<Symbol> {
+        final int hash;
+        final Entry next;
+
+        Entry(Symbol symbol, Entry next, ReferenceQueue<Symbol> queue) {
+            super(symbol, queue);
+            this.hash = symbol.hash;
+            this.next = next;
+        }
+    }
+
+    //one stripe of the table. readers go through the buckets without locking, writers lock the stripe, and a stripe
+    //that is rebuilt is swapped in whole, so a reader sees either the old buckets or the new ones.
+    private static final class Stripe {
+        private static final int MIN_BUCKETS = 16;
+
+        private final ReferenceQueue<Symbol> cleared = new ReferenceQueue<>();
+        private volatile AtomicReferenceArray<Entry> buckets = new AtomicReferenceArray<>(MIN_BUCKETS);
+        private int count = 0;
+
+        Symbol find(int spread, int hash, CharSequence source, int start, int end) {
+            AtomicReferenceArray<Entry> buckets = this.buckets;
+            Entry entry = buckets.get(spread & (buckets.length() - 1));
+            for (; entry != null; entry = entry.next) {
+                if (entry.hash != hash) continue;
+
+                Symbol symbol = entry.get();
+                if (symbol != null && matches(symbol.name, source, start, end)) return symbol;
+            }
+            return null;
+        }
+
+        //makes the symbol, unless another thread made it since find looked.
+        synchronized Symbol add(int spread, int hash, CharSequence source, int start, int end) {
+            Symbol symbol = find(spread, hash, source, start, end);
+            if (symbol != null) return symbol;
+
+            //symbols were collected since the last rebuild, one rebuild drops every cleared entry.
+            boolean stale = false;
+            while (cleared.poll() != null) stale = true;
+            if (stale || count + 1 > buckets.length()) rebuild();
+
+            symbol = new Symbol(source.subSequence(start, end).toString(), hash);
+            AtomicReferenceArray<Entry> buckets = this.buckets;
+            int index = spread & (buckets.length() - 1);
+            buckets.set(index, new Entry(symbol, buckets.get(index), cleared));
+            count++;
+            return symbol;
+        }
+
+        //copies the symbols that are still alive into new buckets sized for them, at most one per bucket on average
+        //once the next symbol is added.
+        private void rebuild() {
+            AtomicReferenceArray<Entry> old = buckets;
+            int live = 0;
+            for (int i = 0; i < old.length(); i++) {
+                for (Entry entry = old.get(i); entry != null; entry = entry.next) {
+                    if (entry.get() != null) live++;
+                }
+            }
+
+            int length = MIN_BUCKETS;
+            while (length < (live + 1) * 2) length *= 2;
+
+            AtomicReferenceArray<Entry> rebuilt = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < old.length(); i++) {
+                for (Entry entry = old.get(i); entry != null; entry = entry.next) {
+                    Symbol symbol = entry.get();
+                    if (symbol == null) continue;
+
+                    int index = ((symbol.hash ^ (symbol.hash >>> 16)) >>> STRIPE_BITS) & (length - 1);
+                    rebuilt.set(index, new Entry(symbol, rebuilt.get(index), cleared));
+                }
+            }
+
+            count = live;
+            buckets = rebuilt;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
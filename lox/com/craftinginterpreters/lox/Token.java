@@ -1,20 +1,56 @@
 package com.craftinginterpreters.lox;
 
 //defines what a token is.
+//the scanner never copies lexemes out of the source: punctuation and keywords share constant lexemes,
+//identifiers carry their interned symbol (which is what variables are looked up by), and a string token's
+//lexeme is only rebuilt from its value if someone asks for it.
 class Token {
     final TokenType type;
-    final String lexeme;
     final Object literal;
     final int line;
+    final Symbol symbol;
+    private String lexeme;
 
+    //the lexeme of a string token can be null, it's made from the literal when it's needed.
     Token(TokenType type, String lexeme, Object literal, int line) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = type == TokenType.IDENTIFIER ? Symbol.intern(lexeme) : null;
+    }
+
+    //an identifier token.
+    Token(Symbol symbol, int line) {
+        this.type = TokenType.IDENTIFIER;
+        this.lexeme = symbol.name;
+        this.literal = null;
+        this.line = line;
+        this.symbol = symbol;
+    }
+
+    private Token(Token token, int line) {
+        this.type = token.type;
+        this.lexeme = token.lexeme;
+        this.literal = token.literal;
+        this.line = line;
+        this.symbol = token.symbol;
+    }
+
+    //the same token on another line.
+    Token onLine(int line) {
+        return line == this.line ? this : new Token(this, line);
+    }
+
+    //the text of the token as it was written in the source.
+    String lexeme() {
+        if (lexeme == null) {
+            lexeme = "\"" + literal + "\"";
+        }
+        return lexeme;
     }
 
     public String toString() {
-        return type + " " + lexeme + " " + literal;
+        return type + " " + lexeme() + " " + literal;
     }
 }
@@ -0,0 +1,403 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+//stack based virtual machine that runs the bytecode made by the compiler. an alternative to the tree-walk interpreter.
+//lox calls push a frame onto the vm's own frame stack instead of recursing in java, so deep lox recursion
+//doesn't grow the java stack. recursion deeper than MAX_FRAMES is stopped with a runtime error instead of running
+//until the heap is full.
+class VM {
+    private static final int MAX_FRAMES = 1 << 20;
+
+    final Environment globals;
+    private Environment environment;
+
+    private Object[] stack = new Object[256];
+    private int stackTop = 0;
+
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+
+    //a function that is currently running, where it's up to, and the environment to go back to when it returns.
+    private static class CallFrame {
+        final CompiledFunction function;
+        final Environment callerEnvironment;
+        int ip = 0;
+
+        CallFrame(CompiledFunction function, Environment callerEnvironment) {
+            this.function = function;
+            this.callerEnvironment = callerEnvironment;
+        }
+    }
+
+    private final ErrorReporter reporter;
+    private final LoxOutput output;
+
+    VM(ErrorReporter reporter, LoxOutput output) {
+        this.reporter = reporter;
+        this.output = output;
+        this.globals = new Environment();
+        this.environment = globals;
+        NativeRegistry.standard().defineIn(globals);
+        globals.define(Symbol.intern("spawn"), new NativeFunction(1, arguments -> spawn(arguments[0])));
+        globals.define(Symbol.intern("flush"), new NativeFunction(0, arguments -> {
+            output.flush();
+            return null;
+        }));
+    }
+
+    //the vm a task runs in, sharing the globals, the error reporter and the output of the vm that spawned it.
+    private VM(VM parent) {
+        this.reporter = parent.reporter;
+        this.output = parent.output;
+        this.globals = parent.globals;
+        this.environment = globals;
+    }
+
+    //starts a task that calls a lox function with no parameters, in a vm of its own.
+    private LoxTask spawn(Object callee) {
+        if (!(callee instanceof VmFunction) || ((VmFunction)callee).function.arity != 0) {
+            throw NativeFunction.error("Can only spawn a function with no parameters.");
+        }
+
+        VmFunction function = (VmFunction)callee;
+        globals.share();
+        VM task = new VM(this);
+        return new LoxTask(() -> {
+            try {
+                return task.call(function);
+            }
+            catch (RuntimeError error) {
+                task.runtimeError(error);
+                throw error;
+            }
+        });
+    }
+
+    //runs a function with no parameters as the outermost frame, and gives back what it returns.
+    private Object call(VmFunction function) {
+        push(function);
+        environment = new Environment(function.closure, function.function.slots);
+        frames[frameCount++] = new CallFrame(function.function, globals);
+        return run();
+    }
+
+    //compiles the statements and runs them, reporting any runtime error the same way the interpreter does.
+    void interpret(List<Stmt> statements) {
+        Compiler compiler = new Compiler(reporter);
+        CompiledFunction script = compiler.compile(statements);
+        if (reporter.hadError) return;
+
+        try {
+            frames[frameCount++] = new CallFrame(script, environment);
+            run();
+        }
+        catch (RuntimeError error) {
+            stackTop = 0;
+            frameCount = 0;
+            environment = globals;
+            runtimeError(error);
+        }
+    }
+
+    //reports a runtime error that stopped the program, after what it printed before it stopped.
+    private void runtimeError(RuntimeError error) {
+        output.flush();
+        reporter.runtimeError(error);
+    }
+
+    //the main loop, decodes and executes one instruction at a time until the outermost frame returns,
+    //then gives back what it returned.
+    private Object run() {
+        CallFrame frame = frames[frameCount - 1];
+        byte[] code = frame.function.chunk.code;
+
+        for (;;) {
+            byte instruction = code[frame.ip++];
+            switch (instruction) {
+                case OpCode.CONSTANT:
+                    push(frame.function.chunk.constants.get(readShort(frame, code)));
+                    break;
+                case OpCode.NULL: push(null); break;
+                case OpCode.TRUE: push(true); break;
+                case OpCode.FALSE: push(false); break;
+                case OpCode.POP: stackTop--; break;
+                case OpCode.GET_LOCAL: {
+                    int depth = readShort(frame, code);
+                    int slot = readShort(frame, code);
+                    push(environment.getAt(depth, slot));
+                    break;
+                }
+                case OpCode.SET_LOCAL: {
+                    int depth = readShort(frame, code);
+                    int slot = readShort(frame, code);
+                    environment.assignAt(depth, slot, peek(0));
+                    break;
+                }
+                case OpCode.DEFINE_LOCAL:
+                    environment.defineAt(readShort(frame, code), pop());
+                    break;
+                case OpCode.GET_GLOBAL:
+                    push(globals.get(readToken(frame, code)));
+                    break;
+                case OpCode.SET_GLOBAL:
+                    globals.assign(readToken(frame, code), peek(0));
+                    break;
+                case OpCode.DEFINE_GLOBAL:
+                    globals.define(readToken(frame, code).symbol, pop());
+                    break;
+                case OpCode.EQUAL: {
+                    Object b = pop();
+                    Object a = pop();
+                    push(Interpreter.isEqual(a, b));
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object b = pop();
+                    Object a = pop();
+                    push(!Interpreter.isEqual(a, b));
+                    break;
+                }
+                case OpCode.GREATER: {
+                    checkNumberOperands(frame);
+                    double b = (double)pop();
+                    double a = (double)pop();
+                    push(a > b);
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    checkNumberOperands(frame);
+                    double b = (double)pop();
+                    double a = (double)pop();
+                    push(a >= b);
+                    break;
+                }
+                case OpCode.LESS: {
+                    checkNumberOperands(frame);
+                    double b = (double)pop();
+                    double a = (double)pop();
+                    push(a < b);
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    checkNumberOperands(frame);
+                    double b = (double)pop();
+                    double a = (double)pop();
+                    push(a <= b);
+                    break;
+                }
+                case OpCode.ADD: {
+                    Object b = pop();
+                    Object a = pop();
+                    if (a instanceof Double && b instanceof Double) {
+                        push(Numbers.box((double)a + (double)b));
+                    }
+                    else if (Rope.isString(a) && Rope.isString(b)) {
+                        push(Rope.concat(a, b));
+                    }
+                    else {
+                        throw new RuntimeError(currentToken(frame), "Operands must be two numbers or two strings.");
+                    }
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    checkNumberOperands(frame);
+                    double b = (double)pop();
+                    double a = (double)pop();
+                    push(Numbers.box(a - b));
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    checkNumberOperands(frame);
+                    double b = (double)pop();
+                    double a = (double)pop();
+                    push(Numbers.box(a * b));
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    checkNumberOperands(frame);
+                    double b = (double)pop();
+                    double a = (double)pop();
+                    push(Numbers.box(a / b));
+                    break;
+                }
+                case OpCode.NOT:
+                    push(!Interpreter.isTruthy(pop()));
+                    break;
+                case OpCode.NEGATE:
+                    if (!(peek(0) instanceof Double)) {
+                        throw new RuntimeError(currentToken(frame), "Operand must be a number.");
+                    }
+                    push(Numbers.box(-(double)pop()));
+                    break;
+                case OpCode.PRINT:
+                    output.println(Interpreter.stringify(pop()));
+                    break;
+                case OpCode.JUMP: {
+                    int offset = readShort(frame, code);
+                    frame.ip += offset;
+                    break;
+                }
+                case OpCode.JUMP_IF_FALSE: {
+                    int offset = readShort(frame, code);
+                    if (!Interpreter.isTruthy(peek(0))) frame.ip += offset;
+                    break;
+                }
+                case OpCode.LOOP: {
+                    int offset = readShort(frame, code);
+                    frame.ip -= offset;
+                    break;
+                }
+                case OpCode.CALL: {
+                    int argCount = code[frame.ip++] & 0xff;
+                    if (callValue(frame, argCount)) {
+                        frame = frames[frameCount - 1];
+                        code = frame.function.chunk.code;
+                    }
+                    break;
+                }
+                case OpCode.CLOSURE: {
+                    CompiledFunction function = (CompiledFunction)frame.function.chunk.constants.get(readShort(frame, code));
+                    push(new VmFunction(function, environment));
+                    break;
+                }
+                case OpCode.RETURN: {
+                    Object result = pop();
+                    environment = frame.callerEnvironment;
+                    frameCount--;
+                    if (frameCount == 0) {
+                        stackTop = 0;
+                        return result;
+                    }
+
+                    //drops the callee that was under the arguments.
+                    stackTop--;
+                    push(result);
+                    frame = frames[frameCount - 1];
+                    code = frame.function.chunk.code;
+                    break;
+                }
+                case OpCode.PUSH_SCOPE:
+                    environment = new Environment(environment, readShort(frame, code));
+                    break;
+                case OpCode.POP_SCOPE:
+                    environment = environment.enclosing;
+                    break;
+                case OpCode.BUILD_LIST: {
+                    int count = readShort(frame, code);
+                    LoxList list = new LoxList(count);
+                    for (int i = stackTop - count; i < stackTop; i++) {
+                        list.add(stack[i]);
+                    }
+                    stackTop -= count;
+                    push(list);
+                    break;
+                }
+                case OpCode.GET_INDEX: {
+                    Object index = pop();
+                    Object object = pop();
+                    push(Interpreter.getIndex(currentToken(frame), object, index));
+                    break;
+                }
+                case OpCode.SET_INDEX: {
+                    Object value = pop();
+                    Object index = pop();
+                    Object object = pop();
+                    Interpreter.setIndex(currentToken(frame), object, index, value);
+                    push(value);
+                    break;
+                }
+            }
+        }
+    }
+
+    //calls the value under the arguments on the stack. lox functions get a new frame and return true so the
+    //main loop switches to it, natives are called straight away and their result replaces the callee.
+    private boolean callValue(CallFrame frame, int argCount) {
+        Object callee = peek(argCount);
+        Token paren = currentToken(frame);
+
+        if (callee instanceof VmFunction) {
+            VmFunction function = (VmFunction)callee;
+            checkArity(paren, function.function.arity, argCount);
+
+            Environment calleeEnvironment = new Environment(function.closure, function.function.slots);
+            for (int i = 0; i < argCount; i++) {
+                calleeEnvironment.defineAt(i, stack[stackTop - argCount + i]);
+            }
+            stackTop -= argCount;
+
+            if (frameCount == MAX_FRAMES) throw new RuntimeError(paren, "Stack overflow.");
+            if (frameCount == frames.length) {
+                frames = Arrays.copyOf(frames, frameCount * 2);
+            }
+            frames[frameCount++] = new CallFrame(function.function, environment);
+            environment = calleeEnvironment;
+            return true;
+        }
+
+        if (callee instanceof LoxCallable) {
+            LoxCallable function = (LoxCallable)callee;
+            checkArity(paren, function.arity(), argCount);
+
+            Object[] arguments = Arrays.copyOfRange(stack, stackTop - argCount, stackTop);
+            stackTop -= argCount + 1;
+            try {
+                push(function.call(null, arguments));
+            }
+            catch (RuntimeError error) {
+                //natives raise errors without a token, they are reported at the call.
+                if (error.token != null) throw error;
+                throw new RuntimeError(paren, error.getMessage());
+            }
+            return false;
+        }
+
+        throw new RuntimeError(paren, "Can only call functions and classes.");
+    }
+
+    private void checkArity(Token paren, int arity, int argCount) {
+        if (argCount != arity) {
+            throw new RuntimeError(paren, "Expected " + arity + " arguments but got " + argCount + ".");
+        }
+    }
+
+    //checks that the two values on top of the stack are numbers.
+    private void checkNumberOperands(CallFrame frame) {
+        if (peek(0) instanceof Double && peek(1) instanceof Double) return;
+
+        throw new RuntimeError(currentToken(frame), "Operands must be numbers.");
+    }
+
+    //reads a two byte operand.
+    private int readShort(CallFrame frame, byte[] code) {
+        frame.ip += 2;
+        return ((code[frame.ip - 2] & 0xff) << 8) | (code[frame.ip - 1] & 0xff);
+    }
+
+    //reads a two byte operand that refers to a constant holding a variable name.
+    private Token readToken(CallFrame frame, byte[] code) {
+        return (Token)frame.function.chunk.constants.get(readShort(frame, code));
+    }
+
+    //returns the token of the instruction that is being executed, used to report errors.
+    private Token currentToken(CallFrame frame) {
+        return frame.function.chunk.tokens[frame.ip - 1];
+    }
+
+    private void push(Object value) {
+        if (stackTop == stack.length) {
+            stack = Arrays.copyOf(stack, stackTop * 2);
+        }
+        stack[stackTop++] = value;
+    }
+
+    private Object pop() {
+        return stack[--stackTop];
+    }
+
+    private Object peek(int distance) {
+        return stack[stackTop - 1 - distance];
+    }
+}
@@ -0,0 +1,17 @@
+package com.craftinginterpreters.lox;
+
+//a function value created by the vm, a compiled function together with the environment it was declared in.
+class VmFunction {
+    final CompiledFunction function;
+    final Environment closure;
+
+    VmFunction(CompiledFunction function, Environment closure) {
+        this.function = function;
+        this.closure = closure;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -15,28 +15,38 @@ public class GenerateAst {
         }
         String outputDir = args[0];
         defineAst(outputDir, "Expr", Arrays.asList(
-                "Assign   : Token name, Expr value",
-                "Binary   : Expr left, Token operator, Expr right",
-                "Call     : Expr callee, Token paren, List<Expr> arguments",
+                "Assign   : Token name, Expr value | int depth, int slot",
+                "Binary   : Expr left, Token operator, Expr right | boolean arithmetic, boolean unboxed, BinaryNode node",
+                "Call     : Expr callee, Token paren, List<Expr> arguments | Object cachedCallee, NativeFunction intrinsic",
                 "Grouping : Expr expression",
+                "Index    : Expr object, Token bracket, Expr index",
+                "Invariant : Token name, Expr expression | int depth, int slot",
+                "ListLiteral : Token bracket, List<Expr> elements",
                 "Literal  : Object value",
                 "Logical  : Expr left, Token operator, Expr right",
-                "Unary    : Token operator, Expr right",
-                "Variable : Token name"
+                "SetIndex : Expr object, Token bracket, Expr index, Expr value",
+                "Unary    : Token operator, Expr right | boolean arithmetic",
+                "Variable : Token name | int depth, int slot"
         ));
-        defineAst(outputDir, "Stmt", Arrays.asList(
+        defineAst(outputDir, "Stmt", "int line", Arrays.asList(
                 "Expression : Expr expression",
-                "Function   : Token name, List<Token> params, List<Stmt> body",
+                "Function   : Token name, List<Token> params, List<Stmt> body | int slots, int slot",
                 "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
-                "Block      : List<Stmt> statements",
+                "Block      : List<Stmt> statements | int slots",
                 "Print      : Expr expression",
-                "Return     : Token keyword, Expr value",
+                "Return     : Token keyword, Expr value | boolean tailCall",
                 "While      : Expr condition, Stmt body",
-                "Var        : Token name, Expr initializer"
+                "Var        : Token name, Expr initializer | int slot"
         ));
     }
 
     private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
+        defineAst(outputDir, baseName, null, types);
+    }
+
+    //base fields are mutable fields every type has, like the resolved fields of a single type.
+    private static void defineAst(String outputDir, String baseName, String baseFields, List<String> types)
+            throws IOException {
         String path = outputDir + "/" + baseName + ".java";
         PrintWriter writer = new PrintWriter(path, "UTF-8");
 
@@ -56,6 +66,13 @@ public class GenerateAst {
         writer.println();
         writer.println("    abstract <R> R accept(Visitor<R> visitor);");
 
+        if (baseFields != null) {
+            writer.println();
+            for (String field : baseFields.split(", ")) {
+                writer.println("    " + field + ";");
+            }
+        }
+
         writer.println("}");
         writer.close();
     }
@@ -71,7 +88,15 @@ public class GenerateAst {
         writer.println("    }");
     }
 
+    //fields after a '|' are not constructor parameters, they are left mutable so the resolver can fill them in,
+    //or so the interpreter can cache what it learns while running the node.
     private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+        String resolvedList = null;
+        if (fieldList.contains("|")) {
+            resolvedList = fieldList.split("\\|")[1].trim();
+            fieldList = fieldList.split("\\|")[0].trim();
+        }
+
         writer.println("    static class " + className + " extends " + baseName + " {");
 
         writer.println("        " + className + "(" + fieldList + ") {");
@@ -94,6 +119,13 @@ public class GenerateAst {
             writer.println("        final " + field + ";");
         }
 
+        if (resolvedList != null) {
+            writer.println();
+            for (String field : resolvedList.split(", ")) {
+                writer.println("        " + field + ";");
+            }
+        }
+
         writer.println("    }");
     }
 }
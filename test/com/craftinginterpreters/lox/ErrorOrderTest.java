@@ -0,0 +1,37 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+//the scanner's errors are reported before the parser's, whichever line they're on.
+class ErrorOrderTest {
+    private static final String SOURCE = "var a = 1;\nvar b = @;\nvar c = ;\nvar d = \"unterminated;\n";
+
+    private static final List<String> ERRORS = Arrays.asList(
+            "[line 2] Error at end: Unexpected character.",
+            "[line 5] Error at end: Unterminated string.",
+            "[line 2] Error at ';': Expect expression.",
+            "[line 3] Error at ';': Expect expression.",
+            "[line 5] Error at end: Expect expression.");
+
+    @Test
+    void parse() {
+        ErrorReporter reporter = new ErrorReporter();
+        Lox.parse(SOURCE, reporter);
+        assertEquals(ERRORS, reporter.messages());
+    }
+
+    @Test
+    void document() {
+        LoxDocument document = new LoxDocument(SOURCE);
+        assertEquals(ERRORS, document.errors());
+
+        document.edit(0, 0, "\n");
+        document.edit(0, 1, "");
+        assertEquals(ERRORS, document.errors());
+    }
+}
@@ -0,0 +1,42 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+//how print writes lists and maps.
+class StringifyTest {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final LoxEngine engine = new LoxEngine(executor);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private String print(String source) {
+        LoxOutput.Memory output = new LoxOutput.Memory();
+        LoxEngine.Result result = engine.run(source, output);
+        assertEquals("[]", result.errors().toString());
+        return output.text();
+    }
+
+    @Test
+    void listContainingItself() {
+        assertEquals("[1, [...]]\n", print("var l = [1]; push(l, l); print l;"));
+    }
+
+    @Test
+    void mapContainingItself() {
+        assertEquals("{self: {...}}\n", print("var m = map(); m[\"self\"] = m; print m;"));
+    }
+
+    @Test
+    void listSeenTwiceWithoutACycle() {
+        assertEquals("[[1], [1]]\n", print("var inner = [1]; var l = [inner, inner]; print l;"));
+    }
+}